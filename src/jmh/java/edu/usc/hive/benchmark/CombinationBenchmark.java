@@ -0,0 +1,63 @@
+package edu.usc.hive.benchmark;
+
+import edu.usc.hive.Combination;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Enumeration of all r-combinations of n candidates: the materialized sets of the original search against the
+ * allocation-free cursor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CombinationBenchmark {
+
+    @Param({"30", "60"})
+    public int n;
+
+    @Param({"2", "3", "4"})
+    public int r;
+
+    private List<Integer> candidates;
+
+    @Setup
+    public void setUp() {
+        candidates = new ArrayList<Integer>(n);
+        for (int i = 0; i < n; i++) {
+            candidates.add(i);
+        }
+    }
+
+    @Benchmark
+    public List<HashSet<Integer>> materialized() {
+        return Combination.getCombination(candidates, r);
+    }
+
+    @Benchmark
+    public long cursor() {
+        Combination combination = new Combination(n, r);
+        long checksum = 0;
+        while (combination.next()) {
+            checksum += combination.get()[r - 1];
+        }
+        return checksum;
+    }
+}
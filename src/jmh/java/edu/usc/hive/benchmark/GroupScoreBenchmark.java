@@ -0,0 +1,70 @@
+package edu.usc.hive.benchmark;
+
+import edu.usc.hive.scoring.SuccessiveGroupBetweenness;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scoring of random groups of size k with the B matrix precomputed, i.e. the per-group cost of the exhaustive search
+ * without the enumeration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GroupScoreBenchmark {
+
+    private static final int GROUPS = 1024;  // power of two
+
+    @Param({"ring", "lattice", "geometric"})
+    public String topology;
+
+    @Param({"118", "300"})
+    public int size;
+
+    @Param({"2", "3", "5", "8"})
+    public int k;
+
+    private SuccessiveGroupBetweenness<Integer, Integer> scorer;
+    private List<Set<Integer>> groups;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        SyntheticGrids grid = SyntheticGrids.create(topology, size, 42);
+        scorer = new SuccessiveGroupBetweenness<Integer, Integer>(grid.getGraph(), grid.getWeights(), false);
+        scorer.precomputePathBetweenness(1);
+        Random random = new Random(7);
+        groups = new ArrayList<Set<Integer>>(GROUPS);
+        for (int i = 0; i < GROUPS; i++) {
+            Set<Integer> group = new HashSet<Integer>();
+            while (group.size() < k) {
+                group.add(random.nextInt(size));
+            }
+            groups.add(group);
+        }
+    }
+
+    @Benchmark
+    public double score() {
+        return scorer.getVertexGroupScore(groups.get(next++ & (GROUPS - 1)));
+    }
+}
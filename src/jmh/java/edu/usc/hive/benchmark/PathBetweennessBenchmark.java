@@ -0,0 +1,70 @@
+package edu.usc.hive.benchmark;
+
+import edu.usc.hive.scoring.PathBetweennessMatrix;
+import edu.usc.hive.scoring.SuccessiveGroupBetweenness;
+import edu.usc.hive.shortestpath.PathCountStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Path betweenness (the B matrix of Puzis et al. 2007): a single entry, as computed by the scorer for every entry
+ * missing in its cache, and the construction of the complete matrix.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PathBetweennessBenchmark {
+
+    private static final int PAIRS = 1024;  // power of two
+
+    @Param({"ring", "lattice", "geometric"})
+    public String topology;
+
+    @Param({"118", "300"})
+    public int size;
+
+    private PathCountStore store;
+    private int[] xs;
+    private int[] ys;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        SyntheticGrids grid = SyntheticGrids.create(topology, size, 42);
+        store = new SuccessiveGroupBetweenness<Integer, Integer>(grid.getGraph(), grid.getWeights(), false).getStore();
+        Random random = new Random(7);
+        xs = new int[PAIRS];
+        ys = new int[PAIRS];
+        for (int i = 0; i < PAIRS; i++) {
+            xs[i] = random.nextInt(size);
+            ys[i] = random.nextInt(size);
+        }
+    }
+
+    @Benchmark
+    public double computeEntry() {
+        int i = next++ & (PAIRS - 1);
+        return PathBetweennessMatrix.compute(store, xs[i], ys[i]);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public PathBetweennessMatrix buildMatrix() {
+        return PathBetweennessMatrix.build(store, 1);
+    }
+}
@@ -0,0 +1,61 @@
+package edu.usc.hive.benchmark;
+
+import edu.usc.hive.shortestpath.DijkstraShortestPathCount;
+import edu.usc.hive.shortestpath.PathCountOptions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * All-pairs preprocessing: construction of {@link DijkstraShortestPathCount} with the original map storage, and with
+ * dense storage filled by the JUNG and by the CSR traversal.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ShortestPathCountBenchmark {
+
+    @Param({"ring", "lattice", "geometric"})
+    public String topology;
+
+    @Param({"118", "300"})
+    public int size;
+
+    @Param({"map", "jung", "csr"})
+    public String variant;
+
+    @Param({"1"})
+    public int threads;
+
+    private SyntheticGrids grid;
+    private PathCountOptions options;
+
+    @Setup
+    public void setUp() {
+        grid = SyntheticGrids.create(topology, size, 42);
+        options = new PathCountOptions().setParallelism(threads);
+        if ("map".equals(variant)) {
+            options.setStorage(PathCountOptions.Storage.MAP);
+        } else {
+            options.setEngine("jung".equals(variant) ? PathCountOptions.Engine.JUNG : PathCountOptions.Engine.CSR);
+        }
+    }
+
+    @Benchmark
+    public DijkstraShortestPathCount<Integer, Integer> construct() {
+        return new DijkstraShortestPathCount<Integer, Integer>(grid.getGraph(), grid.getWeights(), true, options);
+    }
+}
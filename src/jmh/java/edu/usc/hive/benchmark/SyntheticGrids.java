@@ -0,0 +1,112 @@
+package edu.usc.hive.benchmark;
+
+import edu.uci.ics.jung.graph.UndirectedGraph;
+import edu.uci.ics.jung.graph.UndirectedSparseGraph;
+import org.apache.commons.collections15.Transformer;
+import org.apache.commons.collections15.TransformerUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Generators of connected synthetic power grid topologies of a given number of buses, with the same representation
+ * NxContingency builds from an edge list: integer vertices and edges, and a map of edge weights.
+ */
+public class SyntheticGrids {
+
+    /**
+     * Mean degree of the random geometric grids - IEEE test systems have between 2.5 and 3.
+     */
+    public static final double GEOMETRIC_MEAN_DEGREE = 2.7;
+
+    private final UndirectedGraph<Integer, Integer> graph = new UndirectedSparseGraph<Integer, Integer>();
+    private final Map<Integer, Double> weights = new HashMap<Integer, Double>();
+
+    private SyntheticGrids(int n) {
+        for (int i = 0; i < n; i++) {
+            graph.addVertex(i);
+        }
+    }
+
+    /**
+     * @param topology ring, lattice or geometric
+     * @param n        Number of vertices
+     * @param seed     Seed of the random geometric topology
+     */
+    public static SyntheticGrids create(String topology, int n, long seed) {
+        if ("ring".equals(topology)) return ring(n);
+        if ("lattice".equals(topology)) return lattice(n);
+        if ("geometric".equals(topology)) return geometric(n, seed);
+        throw new IllegalArgumentException("Unknown topology " + topology);
+    }
+
+    /**
+     * Cycle of unit weight edges - every pair of vertices has one or two shortest paths.
+     */
+    public static SyntheticGrids ring(int n) {
+        SyntheticGrids grid = new SyntheticGrids(n);
+        for (int i = 0; i < n; i++) {
+            grid.addEdge(i, (i + 1) % n, 1d);
+        }
+        return grid;
+    }
+
+    /**
+     * Nearly square lattice of unit weight edges filled row by row - many shortest paths of equal length.
+     */
+    public static SyntheticGrids lattice(int n) {
+        SyntheticGrids grid = new SyntheticGrids(n);
+        int cols = (int) Math.ceil(Math.sqrt(n));
+        for (int i = 0; i < n; i++) {
+            if ((i + 1) % cols != 0 && i + 1 < n) grid.addEdge(i, i + 1, 1d);
+            if (i + cols < n) grid.addEdge(i, i + cols, 1d);
+        }
+        return grid;
+    }
+
+    /**
+     * Buses placed uniformly at random into the unit square and lines between the buses closer than the radius giving
+     * {@link #GEOMETRIC_MEAN_DEGREE}, weighted by their lengths. Each bus is also connected to its nearest predecessor,
+     * which keeps the grid connected.
+     */
+    public static SyntheticGrids geometric(int n, long seed) {
+        SyntheticGrids grid = new SyntheticGrids(n);
+        Random random = new Random(seed);
+        double[] xs = new double[n];
+        double[] ys = new double[n];
+        for (int i = 0; i < n; i++) {
+            xs[i] = random.nextDouble();
+            ys[i] = random.nextDouble();
+        }
+        double radius = Math.sqrt(GEOMETRIC_MEAN_DEGREE / (Math.PI * n));
+        for (int i = 1; i < n; i++) {
+            int nearest = 0;
+            double nearestLength = Double.POSITIVE_INFINITY;
+            for (int j = 0; j < i; j++) {
+                double length = Math.hypot(xs[i] - xs[j], ys[i] - ys[j]);
+                if (length < radius) grid.addEdge(i, j, length);
+                if (length < nearestLength) {
+                    nearest = j;
+                    nearestLength = length;
+                }
+            }
+            if (nearestLength >= radius) grid.addEdge(i, nearest, nearestLength);
+        }
+        return grid;
+    }
+
+    private void addEdge(int u, int v, double weight) {
+        int e = graph.getEdgeCount();
+        graph.addEdge(e, u, v);
+        weights.put(e, weight);
+    }
+
+    public UndirectedGraph<Integer, Integer> getGraph() {
+        return graph;
+    }
+
+    public Transformer<Integer, Double> getWeights() {
+        return TransformerUtils.mapTransformer(weights);
+    }
+}
@@ -8,9 +8,181 @@ import java.util.List;
 
 /**
  * Created by charith on 5/17/17.
+ * <p/>
+ * Enumerates the <code>r</code>-combinations of the indices <code>0..n-1</code> in lexicographic order. An instance
+ * is a cursor over a single reused <code>int[]</code>, so enumerating all <code>C(n, r)</code> groups takes constant
+ * memory. Every combination has a rank in the combinatorial number system, which allows a cursor to start at an
+ * arbitrary rank and to stop before another one - the rank range can thus be split into chunks that are enumerated
+ * independently (e.g. in parallel).
  */
 public class Combination {
 
+    private final int n;
+    private final int r;
+    private final int[] indices;
+    private final long toRank;
+    private long rank;
+    private boolean started;
+    private int changedFrom;
+
+    /**
+     * Creates a cursor over all <code>r</code>-combinations of <code>0..n-1</code>.
+     *
+     * @param n Number of elements
+     * @param r Size of a combination
+     */
+    public Combination(int n, int r) {
+        this(n, r, 0, binomial(n, r));
+    }
+
+    /**
+     * Creates a cursor over the combinations with ranks in <code>[fromRank, toRank)</code>.
+     *
+     * @param n        Number of elements
+     * @param r        Size of a combination
+     * @param fromRank Rank of the first combination (inclusive)
+     * @param toRank   Rank of the last combination (exclusive)
+     */
+    public Combination(int n, int r, long fromRank, long toRank) {
+        if (r < 0 || r > n)
+            throw new IllegalArgumentException("Invalid combination size " + r + " of " + n + " elements");
+        if (fromRank < 0 || fromRank > toRank || toRank > binomial(n, r))
+            throw new IllegalArgumentException("Invalid rank range [" + fromRank + ", " + toRank + ")");
+        this.n = n;
+        this.r = r;
+        this.indices = new int[r];
+        this.toRank = toRank;
+        this.rank = fromRank - 1;
+        if (fromRank < toRank) {
+            unrank(fromRank, n, r, indices);
+        }
+    }
+
+    /**
+     * Moves the cursor to the next combination. Has to be called before the first combination is read.
+     *
+     * @return True if the cursor points to a combination, false if the range is exhausted
+     */
+    public boolean next() {
+        if (rank + 1 >= toRank) {
+            rank = toRank;
+            return false;
+        }
+        if (!started) {  // the first combination was already placed by the constructor
+            started = true;
+            rank++;
+            changedFrom = 0;
+            return true;
+        }
+        rank++;
+        int i = r - 1;
+        while (indices[i] == n - r + i) {
+            i--;
+        }
+        indices[i]++;
+        for (int j = i + 1; j < r; j++) {
+            indices[j] = indices[j - 1] + 1;
+        }
+        changedFrom = i;
+        return true;
+    }
+
+    /**
+     * @return First position of the current combination that differs from the previous one - the combinations share
+     * the prefix before it. 0 for the first combination of the range.
+     */
+    public int getChangedFrom() {
+        return changedFrom;
+    }
+
+    /**
+     * @return Indices of the current combination in ascending order. The array is reused by the cursor, so it must
+     * not be modified or kept after the next call of {@link #next()}.
+     */
+    public int[] get() {
+        return indices;
+    }
+
+    /**
+     * @return Rank of the current combination
+     */
+    public long getRank() {
+        return rank;
+    }
+
+    /**
+     * Computes the binomial coefficient <code>C(n, r)</code>.
+     *
+     * @throws ArithmeticException if the coefficient does not fit in a long
+     */
+    public static long binomial(int n, int r) {
+        if (r < 0 || r > n) return 0;
+        r = Math.min(r, n - r);
+        long result = 1;
+        for (int i = 1; i <= r; i++) {
+            long factor = n - r + i;
+            if (result > Long.MAX_VALUE / factor)
+                throw new ArithmeticException("C(" + n + ", " + r + ") does not fit in a long");
+            result = result * factor / i;
+        }
+        return result;
+    }
+
+    /**
+     * Writes the combination with the given lexicographic rank into <code>out</code>.
+     *
+     * @param rank Rank of the combination, <code>0 <= rank < C(n, r)</code>
+     * @param n    Number of elements
+     * @param r    Size of a combination
+     * @param out  Array of length at least <code>r</code>
+     */
+    public static void unrank(long rank, int n, int r, int[] out) {
+        int c = 0;
+        for (int i = 0; i < r; i++) {
+            long count = binomial(n - c - 1, r - i - 1);
+            while (rank >= count) {
+                rank -= count;
+                c++;
+                count = binomial(n - c - 1, r - i - 1);
+            }
+            out[i] = c++;
+        }
+    }
+
+    /**
+     * Computes the lexicographic rank of a combination.
+     *
+     * @param combination Indices in ascending order
+     * @param n           Number of elements
+     * @return Rank of the combination
+     */
+    public static long rank(int[] combination, int n) {
+        int r = combination.length;
+        long rank = 0;
+        int c = 0;
+        for (int i = 0; i < r; i++) {
+            for (; c < combination[i]; c++) {
+                rank += binomial(n - c - 1, r - i - 1);
+            }
+            c++;
+        }
+        return rank;
+    }
+
+    /**
+     * Splits the ranks <code>[0, count)</code> into at most <code>parts</code> contiguous chunks of similar size.
+     *
+     * @return Chunk boundaries - chunk <code>i</code> spans ranks <code>[bounds[i], bounds[i+1])</code>
+     */
+    public static long[] split(long count, int parts) {
+        parts = (int) Math.max(1, Math.min(parts, count));
+        long[] bounds = new long[parts + 1];
+        for (int i = 0; i <= parts; i++) {
+            bounds[i] = count / parts * i + Math.min(i, count % parts);
+        }
+        return bounds;
+    }
+
     static void combinationUtil(List<Integer> arr, int data[], int start,
                                 int end, int index, int r, List<HashSet<Integer>> result)
     {
@@ -1,15 +1,36 @@
 package edu.usc.hive;
 
 import edu.uci.ics.jung.graph.UndirectedGraph;
-import edu.uci.ics.jung.graph.UndirectedSparseGraph;
+import edu.usc.hive.io.EdgeList;
+import edu.usc.hive.io.EdgeListLoader;
+import edu.usc.hive.io.PathCountSnapshot;
+import edu.usc.hive.io.SearchCheckpoint;
+import edu.usc.hive.io.SweepReport;
+import edu.usc.hive.scoring.ComponentDecomposition;
+import edu.usc.hive.scoring.SampledGroupBetweenness;
+import edu.usc.hive.scoring.SamplingOptions;
 import edu.usc.hive.scoring.SuccessiveGroupBetweenness;
+import edu.usc.hive.search.CandidateFilter;
+import edu.usc.hive.search.ComponentSearch;
+import edu.usc.hive.search.BranchAndBoundSearch;
+import edu.usc.hive.search.ExhaustiveSearch;
+import edu.usc.hive.search.GreedySearch;
+import edu.usc.hive.search.IndexedGreedySearch;
+import edu.usc.hive.search.SearchResult;
+import edu.usc.hive.search.TopK;
+import edu.usc.hive.search.ShardCoordinator;
+import edu.usc.hive.search.ShardWorker;
+import edu.usc.hive.shortestpath.DijkstraShortestPathCount;
+import edu.usc.hive.shortestpath.PathCountOptions;
+import edu.usc.hive.util.Metrics;
+import org.apache.commons.collections15.Transformer;
 import org.apache.commons.collections15.TransformerUtils;
 
 
-import java.io.BufferedReader;
-import java.io.FileReader;
+import java.io.File;
 import java.io.FileWriter;
 import java.io.PrintWriter;
+import java.net.InetAddress;
 import java.util.*;
 
 /**
@@ -22,106 +43,501 @@ public class NxContingency {
 
     /**
      * args[0] input edge list
-     * args[1] x
+     * args[1] x, a range of x (1..9) or a list (1,3,5)
      * args[2] output format n: no output v: stdOut f: file output
      * args[3] outfile
+     * Options (--name value) may be given anywhere:
+     * --threads number of threads for the shortest paths, the B matrix and the scoring (default 1)
+     * --b-matrix eager: compute the complete B matrix up front (default for the exhaustive search), lazy: compute its
+     * entries on demand (default for the other searches)
+     * --search exhaustive (default), greedy, lazy-greedy or bnb (branch and bound)
+     * --gap-limit largest number of groups for which an approximate result is compared to the exhaustive one
+     * --snapshot file with the preprocessing of the graph: used if it matches the graph, (re)written otherwise; the
+     * snapshot keeps the whole graph, so its connected components are then not preprocessed separately
+     * --format text (default), csv or json: results of all x written at the end to std out or the outfile
+     * --top number of best groups reported per x, ranked by their scores (default 1, not for the greedy searches)
+     * --weight-resolution edge weights are rounded to whole multiples of it, so that equally long paths have exactly
+     * equal distances (default 0: weights used as they are)
+     * --storage dense (default): n x n matrices, on the heap if they fit into arrays; packed: symmetric distances and
+     * path counts kept as triangles, two thirds of the memory, for integral weights or with a --weight-resolution;
+     * off-heap: n x n matrices in direct buffers
+     * --checkpoint file into which the progress of the exhaustive searches is written every
+     * --checkpoint-interval seconds (default 60); a run on the same graph resumes from it
+     * --candidates all (default) or prefiltered: without the leaves, which never make the best group better than their
+     * neighbours, ranked by their individual betweenness; for a single group only
+     * --coordinator [host:]port: hand the exhaustive searches out in shards of ranks to worker processes connecting
+     * to the port (on the loopback address unless a host is given), merge their best groups and report as usual; a
+     * worker that doesn't return a shard within --shard-timeout seconds (default 600) is dropped and its shard
+     * handed to another one
+     * --worker host:port: score the shards of the coordinator on the same graph and options, then exit
+     * --metrics file into which the counters and timers of the run are written as JSON, every
+     * --metrics-interval seconds (default 10) and at the end; they are also published via JMX
+     * --scorer exact (default): all-pairs statistics; sampled: betweenness estimated from the shortest paths of random
+     * vertex pairs, within --epsilon (default 0.01) times the number of pairs with a probability of 1 - --delta
+     * (default 0.1), drawn with --seed (default 0); the exhaustive search keeps the --finalists (default 10) best
+     * estimates, the greedy search one group per component, and they are rescored exactly before they are reported
      * @param args
      */
     public static void main(String[] args) throws  Exception {
 
-        List<String> edges = new ArrayList<String>();
-        HashSet<Integer> vertices = new HashSet<Integer>();
-        UndirectedGraph<Integer, Integer> g = new UndirectedSparseGraph<Integer, Integer>();
-        Map<Integer, Double> w = new HashMap<Integer, Double>();
-
-        int x = Integer.parseInt(args[1]);
+        Map<String, String> options = new HashMap<String, String>();
+        args = parseOptions(args, options);
+        int threads = Integer.parseInt(getOption(options, "threads", "1"));
+        String search = getOption(options, "search", "exhaustive");
+        // the exhaustive search reads B for every pair of candidates, the others only for the pairs they get to
+        boolean eagerB = "eager".equals(getOption(options, "b-matrix",
+                "exhaustive".equals(search) ? "eager" : "lazy"));
+        long gapLimit = Long.parseLong(getOption(options, "gap-limit", "1000000"));
+        String snapshotFile = getOption(options, "snapshot", null);
+        String format = getOption(options, "format", "text");
+        int top = Integer.parseInt(getOption(options, "top", "1"));
+        double weightResolution = Double.parseDouble(getOption(options, "weight-resolution", "0"));
+        String storage = getOption(options, "storage", "dense");
+        String checkpointFile = getOption(options, "checkpoint", null);
+        long checkpointInterval = Long.parseLong(getOption(options, "checkpoint-interval", "60"));
+        String candidates = getOption(options, "candidates", "all");
+        String coordinatorAddress = getOption(options, "coordinator", null);
+        String workerAddress = getOption(options, "worker", null);
+        long shardTimeout = Long.parseLong(getOption(options, "shard-timeout", "600"));
+        String metricsFile = getOption(options, "metrics", null);
+        long metricsInterval = Long.parseLong(getOption(options, "metrics-interval", "10"));
+        String scorer = getOption(options, "scorer", "exact");
+        double epsilon = Double.parseDouble(getOption(options, "epsilon", "0.01"));
+        double delta = Double.parseDouble(getOption(options, "delta", "0.1"));
+        long seed = Long.parseLong(getOption(options, "seed", "0"));
+        int finalists = Integer.parseInt(getOption(options, "finalists", "10"));
+
+        int[] xs = parseGroupSizes(args[1]);
         String out = args[2];
         String outFile = null;
         if("f".equals(out)) {
             outFile = args[3];
         }
+        if (!"text".equals(format) && !"csv".equals(format) && !"json".equals(format))
+            throw new IllegalArgumentException("Unknown format " + format);
+        if (!"dense".equals(storage) && !"packed".equals(storage) && !"off-heap".equals(storage))
+            throw new IllegalArgumentException("Unknown storage " + storage);
+        if (top < 1)
+            throw new IllegalArgumentException("Number of groups must be positive");
+        if (!"all".equals(candidates) && !"prefiltered".equals(candidates))
+            throw new IllegalArgumentException("Unknown candidates " + candidates);
+        if (top > 1 && "prefiltered".equals(candidates))
+            throw new IllegalArgumentException("Prefiltered candidates keep the best group only");
+        if (top > 1 && search.endsWith("greedy"))
+            throw new IllegalArgumentException("Greedy searches find a single group");
+        if (coordinatorAddress != null && (workerAddress != null || checkpointFile != null))
+            throw new IllegalArgumentException("A coordinator can't be a worker or keep a checkpoint");
+        if (!"exact".equals(scorer) && !"sampled".equals(scorer))
+            throw new IllegalArgumentException("Unknown scorer " + scorer);
+        if ("sampled".equals(scorer) && (snapshotFile != null || checkpointFile != null || coordinatorAddress != null
+                || workerAddress != null || "prefiltered".equals(candidates)))
+            throw new IllegalArgumentException("Sampled scores can't be kept in a snapshot, checkpointed, distributed "
+                    + "or prefiltered");
+        if ("sampled".equals(scorer) && !"exhaustive".equals(search) && !"greedy".equals(search))
+            throw new IllegalArgumentException("Sampled scores are searched exhaustively or greedily");
+        if (finalists < 1)
+            throw new IllegalArgumentException("Number of finalists must be positive");
+
+        Metrics.get().registerMBean();
+        if (metricsFile != null) {
+            Metrics.get().startReporting(new File(metricsFile), metricsInterval * 1000);
+        }
+
+        EdgeList edges = EdgeListLoader.load(args[0]);
+        UndirectedGraph<Integer, Integer> g = edges.toGraph();
+        Map<Integer, Double> w = edges.getWeightMap();
+        HashSet<Integer> vertices = new HashSet<Integer>(g.getVertices());
 
-        BufferedReader reader = new BufferedReader(new FileReader(args[0]));
-        String line = reader.readLine();
+        for (int x : xs) {
+            if(x < 1 || x > vertices.size()) {
+                System.out.println("Invalid input, 0 < x < N (number of vertices)");
+                return;
+            }
+        }
 
-        int edgeId=0;
-        while(line != null) {
-            edges.add(line);
-            String[] parts = line.split(",");
-            int s = Integer.parseInt(parts[0]);
+        long startTime = System.nanoTime();
+        ArrayList<Integer> vals = new ArrayList<Integer>();
+        vals.addAll(vertices);
 
-            if(!vertices.contains(s)) {
-                g.addVertex(s);
+        Transformer<Integer, Double> weights = TransformerUtils.mapTransformer(w);
+        PathCountOptions pathCountOptions = new PathCountOptions().setParallelism(threads)
+                .setWeightResolution(weightResolution)
+                .setStorage(PathCountOptions.Storage.valueOf(storage.replace('-', '_').toUpperCase(Locale.ROOT)));
+        // quantized weights give other statistics, so the resolution is part of the key of the snapshot and checkpoint
+        long snapshotKey = weightResolution == 0 ? edges.getFingerprint()
+                : 31 * edges.getFingerprint() + Double.doubleToLongBits(weightResolution);
+        SearchCheckpoint checkpoint = null;
+        if (checkpointFile != null) {
+            checkpoint = SearchCheckpoint.open(new File(checkpointFile), snapshotKey, checkpointInterval * 1000);
+        }
+        PathCountSnapshot snapshot = null;
+        if (snapshotFile != null) {
+            Long fingerprint = PathCountSnapshot.readFingerprint(new File(snapshotFile));
+            if (fingerprint != null && fingerprint == snapshotKey) {
+                snapshot = PathCountSnapshot.read(new File(snapshotFile));
+            }
+        }
+        SuccessiveGroupBetweenness<Integer, Integer> gb = null;    // scorer of the whole graph, with a snapshot only
+        SampledGroupBetweenness<Integer, Integer> sampled = null;  // instead of the exact scorers
+        ComponentDecomposition<Integer, Integer> components = null;
+        if ("sampled".equals(scorer)) {
+            int maxX = 0;
+            for (int x : xs) {
+                maxX = Math.max(maxX, x);
+            }
+            sampled = new SampledGroupBetweenness<Integer, Integer>(g, weights, false, pathCountOptions,
+                    new SamplingOptions().setEpsilon(epsilon).setDelta(delta).setGroupSize(maxX).setSeed(seed));
+        } else if (snapshot != null) {
+            gb = new SuccessiveGroupBetweenness<Integer, Integer>(g, weights, false,
+                    new DijkstraShortestPathCount<Integer, Integer>(g, weights, snapshot.getVertexIndex(),
+                            snapshot.getStore()));
+            if (snapshot.getPathBetweenness() != null) {
+                gb.setPathBetweennessMatrix(snapshot.getPathBetweenness());
             }
-            vertices.add(s);
+            components = ComponentDecomposition.whole(g, gb);
+        } else if (snapshotFile != null) {
+            gb = new SuccessiveGroupBetweenness<Integer, Integer>(g, weights, false, pathCountOptions);
+            components = ComponentDecomposition.whole(g, gb);
+        } else {
+            components = ComponentDecomposition.decompose(g, weights, false, pathCountOptions);
+        }
+        if (eagerB && components != null) {
+            components.precomputePathBetweenness(threads);
+        }
+        long preprocessingTime = System.nanoTime() - startTime;
+
+        // all group sizes share the scorers, i.e. the all-pairs statistics and the B matrices
+        ComponentSearch<Integer> componentSearch = components == null ? null
+                : new ComponentSearch<Integer>(components, vals);
+        CandidateFilter<Integer> filter = "prefiltered".equals(candidates) ? new CandidateFilter<Integer>(g) : null;
+        if (workerAddress != null) {
+            int colon = workerAddress.lastIndexOf(':');
+            new ShardWorker<Integer>(componentSearch, threads).setFilter(filter).run(workerAddress.substring(0, colon),
+                    Integer.parseInt(workerAddress.substring(colon + 1)), snapshotKey);
+            if (metricsFile != null) {
+                Metrics.get().stopReporting();
+                Metrics.get().writeJson(new File(metricsFile));
+            }
+            return;
+        }
+        ShardCoordinator coordinator = null;
+        if (coordinatorAddress != null) {
+            int colon = coordinatorAddress.lastIndexOf(':');
+            InetAddress address = colon < 0 ? InetAddress.getLoopbackAddress()
+                    : InetAddress.getByName(coordinatorAddress.substring(0, colon));
+            coordinator = new ShardCoordinator(address, Integer.parseInt(coordinatorAddress.substring(colon + 1)),
+                    snapshotKey).setShardTimeout(shardTimeout * 1000);
+        }
+        SweepReport report = new SweepReport(args[0], vertices.size(), preprocessingTime);
+        PrintWriter writer = null;
+        if ("f".equals(out)) {
+            writer = new PrintWriter(new FileWriter(outFile));
+        }
+        ComponentSearch.Strategy<Integer> strategy = strategy(search, threads, checkpoint, coordinator);
+        ComponentSearch.Strategy<Integer> exhaustive = strategy("exhaustive", threads, checkpoint, coordinator);
+        if (filter != null) {
+            strategy = filter.apply(strategy);
+            exhaustive = filter.apply(exhaustive);
+        }
+        if ("text".equals(format) && xs.length > 1) {
+            System.out.println("preprocessing time: " + preprocessingTime / 1000000 + " ms");
+        }
+        if ("text".equals(format) && sampled != null) {
+            System.out.println("sampled pairs: " + sampled.getSampleCount() + ", error bound: "
+                    + sampled.getErrorBound());
+        }
+        for (int x : xs) {
+            long searchStart = System.nanoTime();
+            SearchResult<Integer> result = sampled != null
+                    ? searchSampled(sampled, vals, search, x, top, finalists, threads)
+                    : componentSearch.search(x, top, strategy);
+            long searchTime = System.nanoTime() - searchStart;
+            Metrics.get().timer(Metrics.SEARCH).record(searchTime);
+            Set<Integer> maxBC = result.getGroup();
+            double currentMax = result.getScore();
+
+            Double exhaustiveScore = null;
+            if (search.endsWith("greedy") && sampled == null && maxBC != null
+                    && countGroups(vals.size(), x) <= gapLimit) {
+                exhaustiveScore = componentSearch.search(x, 1, exhaustive).getScore();
+            }
+            report.add(x, search, result, searchTime, exhaustiveScore);
+            if (!"text".equals(format)) continue;
+
+            // a single group size reports the time including the preprocessing, as a separate run would
+            long time = searchTime + (xs.length == 1 ? preprocessingTime : 0);
+            System.out.println("x: " + x + ", time: " + time / 1000000 + " ms");
 
-            int t = Integer.parseInt(parts[1]);
-            if(!vertices.contains(t)) {
-                g.addVertex(t);
+            if (!"exhaustive".equals(search)) {
+                long groups = countGroups(vals.size(), x);
+                System.out.println(search + " evaluations: " + result.getEvaluations() + " of "
+                        + (groups == Long.MAX_VALUE ? "C(" + vals.size() + ", " + x + ")" : groups) + " groups");
+            }
+            if (exhaustiveScore != null) {
+                double gap = exhaustiveScore - currentMax;
+                System.out.println("exhaustive score: " + exhaustiveScore + ", gap: " + gap
+                        + " (" + (100 * gap / Math.abs(exhaustiveScore)) + " %)");
             }
 
-            vertices.add(t);
+            if("v".equals(out) && maxBC != null) {
+                printGroups(new PrintWriter(System.out, true), result);
+            } else if ("f".equals(out) && maxBC != null) {
+                if (xs.length > 1) {
+                    writer.println("x: " + x);
+                }
+                printGroups(writer, result);
+            }
+        }
 
-            g.addEdge(++edgeId, s, t);
+        if (coordinator != null) {
+            coordinator.close();    // the workers exit
+        }
 
-            if(parts.length == 3) {
-                w.put(edgeId, Double.parseDouble(parts[2]));
+        if (!"text".equals(format) && !"n".equals(out)) {
+            PrintWriter target = writer != null ? writer : new PrintWriter(System.out);
+            if ("csv".equals(format)) {
+                report.writeCsv(target);
             } else {
-                w.put(edgeId, 1d);
+                report.writeJson(target);
             }
-
-            line = reader.readLine();
+        }
+        if (writer != null) {
+            writer.flush();
+            writer.close();
         }
 
-        if(x < 1 || x > vertices.size()) {
-            System.out.println("Invalid input, 0 < x < N (number of vertices)");
-            return;
+        // written after the search, so that it doesn't count into its time
+        if (gb != null && (snapshot == null
+                || snapshot.getPathBetweenness() == null && gb.getPathBetweennessMatrix() != null)) {
+            PathCountSnapshot.write(new File(snapshotFile), snapshotKey, gb.getVertexIndex(),
+                    gb.getStore(), gb.getPathBetweennessMatrix());
+        }
+        if (metricsFile != null) {
+            Metrics.get().stopReporting();
+            Metrics.get().writeJson(new File(metricsFile));
         }
+    }
 
-        long startTime = System.currentTimeMillis();
-        ArrayList<Integer> vals = new ArrayList<Integer>();
-        vals.addAll(vertices);
+    /**
+     * @return Number of groups of size <code>x</code>, or <code>Long.MAX_VALUE</code> if it does not fit in a long
+     */
+    static long countGroups(int n, int x) {
+        try {
+            return Combination.binomial(n, x);
+        } catch (ArithmeticException e) {
+            return Long.MAX_VALUE;
+        }
+    }
 
+    /**
+     * Prints the group and its score, or with several ranked groups each of them under its rank.
+     */
+    static void printGroups(PrintWriter writer, SearchResult<Integer> result) {
+        List<Set<Integer>> groups = result.getGroups();
+        for (int i = 0; i < groups.size(); i++) {
+            writer.println((groups.size() > 1 ? "Rank " + (i + 1) + ", " : "") + "Group Centrality: "
+                    + result.getScore(i));
 
+            for(Integer v: groups.get(i)) {
+                writer.println(v);
+            }
+        }
+        writer.flush();
+    }
 
-        List<HashSet<Integer>> groups = Combination.getCombination(vals, x);
+    /**
+     * @return The search of a single connected component, exhaustive ones on the workers of the coordinator if there
+     * is one
+     */
+    static ComponentSearch.Strategy<Integer> strategy(final String search, final int threads,
+                                                      final SearchCheckpoint checkpoint,
+                                                      final ShardCoordinator coordinator) {
+        return new ComponentSearch.Strategy<Integer>() {
+            public SearchResult<Integer> search(SuccessiveGroupBetweenness<Integer, ?> scorer, List<Integer> candidates,
+                                                int x, int k) throws InterruptedException {
+                if (coordinator != null && "exhaustive".equals(search)) {
+                    return coordinator.search(candidates, x, k);
+                }
+                return NxContingency.search(scorer, candidates, search, x, k, threads, checkpoint);
+            }
+        };
+    }
 
-        Set<Integer> maxBC = null;
-        double currentMax = -1*Double.MAX_VALUE;
-        SuccessiveGroupBetweenness<Integer, Integer> gb = new SuccessiveGroupBetweenness<Integer, Integer>(g,
-                TransformerUtils.mapTransformer(w), false);
+    static SearchResult<Integer> search(SuccessiveGroupBetweenness<Integer, ?> gb, List<Integer> vals,
+                                        String search, int x, int top, int threads, SearchCheckpoint checkpoint)
+            throws InterruptedException {
+        if ("exhaustive".equals(search)) {
+            return new ExhaustiveSearch<Integer>(gb, vals, threads).setCheckpoint(checkpoint).search(x, top);
+        } else if ("greedy".equals(search) || "lazy-greedy".equals(search)) {
+            return new GreedySearch<Integer>(gb, vals, "lazy-greedy".equals(search)).search(x);
+        } else if ("bnb".equals(search)) {
+            return new BranchAndBoundSearch<Integer>(gb, vals).search(x, top);
+        } else {
+            throw new IllegalArgumentException("Unknown search " + search);
+        }
+    }
 
-        for(HashSet<Integer> group: groups) {
-            try {
-                double score = gb.getVertexGroupScore(group);
-                if (currentMax < score) {
-                    maxBC = group;
-                    currentMax = score;
+    /**
+     * Searches the estimates of the sampled scorer and rescores the best groups exactly. Like the exact search, every
+     * component with at least <code>x</code> candidates is searched on its own, so no group spanning several
+     * components is enumerated: the exhaustive search keeps the finalists over all components, the greedy search the
+     * group of every component, of which the finalists with the best estimates are rescored. The <code>top</code>
+     * groups by their exact scores are reported.
+     */
+    static SearchResult<Integer> searchSampled(SampledGroupBetweenness<Integer, ?> scorer, List<Integer> vals,
+                                               String search, int x, int top, int finalists, int threads)
+            throws InterruptedException {
+        Map<Integer, List<Integer>> componentCandidates = new LinkedHashMap<Integer, List<Integer>>();
+        for (Integer v : vals) {
+            List<Integer> candidates = componentCandidates.get(scorer.getComponent(v));
+            if (candidates == null) {
+                candidates = new ArrayList<Integer>();
+                componentCandidates.put(scorer.getComponent(v), candidates);
+            }
+            candidates.add(v);
+        }
+        final List<Set<Integer>> groups = new ArrayList<Set<Integer>>();
+        long evaluations = 0;
+        if ("exhaustive".equals(search)) {
+            // merged by the positions of the members in vals, which breaks ties as a single search would
+            Map<Integer, Integer> positions = new HashMap<Integer, Integer>(vals.size() * 2);
+            for (int i = 0; i < vals.size(); i++) {
+                positions.put(vals.get(i), i);
+            }
+            TopK best = new TopK(Math.max(top, finalists));
+            int[] indices = new int[x];
+            for (List<Integer> candidates : componentCandidates.values()) {
+                if (candidates.size() < x) continue;
+                SearchResult<Integer> estimated = new ExhaustiveSearch<Integer>(scorer, candidates, threads)
+                        .search(x, Math.max(top, finalists));
+                evaluations += estimated.getEvaluations();
+                for (int i = 0; i < estimated.getGroups().size(); i++) {
+                    int j = 0;
+                    for (Integer v : estimated.getGroups().get(i)) {
+                        indices[j++] = positions.get(v);
+                    }
+                    Arrays.sort(indices);
+                    best.offer(estimated.getScore(i), indices);
                 }
-            } catch (Exception e) {
-
             }
+            double[] estimates = new double[best.size()];
+            int[][] finalistPositions = new int[best.size()][];
+            best.drain(estimates, finalistPositions);
+            for (int[] members : finalistPositions) {
+                Set<Integer> group = new HashSet<Integer>();
+                for (int i : members) {
+                    group.add(vals.get(i));
+                }
+                groups.add(group);
+            }
+        } else {
+            final List<Double> estimates = new ArrayList<Double>();
+            for (List<Integer> candidates : componentCandidates.values()) {
+                if (candidates.size() < x) continue;
+                SearchResult<Integer> estimated = new IndexedGreedySearch<Integer>(scorer, candidates).search(x);
+                evaluations += estimated.getEvaluations();
+                if (estimated.getGroup() != null) {
+                    groups.add(estimated.getGroup());
+                    estimates.add(estimated.getScore());
+                }
+            }
+            Integer[] order = new Integer[groups.size()];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, new Comparator<Integer>() {
+                public int compare(Integer a, Integer b) {
+                    int c = Double.compare(estimates.get(b), estimates.get(a));
+                    return c != 0 ? c : a - b;
+                }
+            });
+            List<Set<Integer>> best = new ArrayList<Set<Integer>>();
+            for (int i = 0; i < Math.min(order.length, Math.max(top, finalists)); i++) {
+                best.add(groups.get(order[i]));
+            }
+            groups.clear();
+            groups.addAll(best);
+        }
+        if (groups.isEmpty()) {
+            return new SearchResult<Integer>(null, -1 * Double.MAX_VALUE, evaluations);
         }
 
-        long endTime  = System.currentTimeMillis();
-        System.out.println("x: " + x + ", time: " + (endTime - startTime) + " ms");
-
-        if("v".equals(out) && maxBC != null) {
-            System.out.println("Group Centrality: " + currentMax);
+        final double[] exact = scorer.getExactScores(groups);
+        Integer[] order = new Integer[groups.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                int c = Double.compare(exact[b], exact[a]);
+                return c != 0 ? c : a - b;
+            }
+        });
+        List<Set<Integer>> ranked = new ArrayList<Set<Integer>>();
+        double[] scores = new double[Math.min(top, order.length)];
+        for (int i = 0; i < scores.length; i++) {
+            ranked.add(groups.get(order[i]));
+            scores[i] = exact[order[i]];
+        }
+        return new SearchResult<Integer>(ranked, scores, evaluations);
+    }
 
-            for(Integer v: maxBC) {
-                System.out.println(v);
+    /**
+     * Parses group sizes given as a single number (<code>3</code>), an inclusive range (<code>1..9</code>), or a
+     * comma separated list of both (<code>1,3,5..7</code>).
+     */
+    static int[] parseGroupSizes(String value) {
+        List<Integer> sizes = new ArrayList<Integer>();
+        for (String part : value.split(",")) {
+            int range = part.indexOf("..");
+            if (range >= 0) {
+                int from = Integer.parseInt(part.substring(0, range).trim());
+                int to = Integer.parseInt(part.substring(range + 2).trim());
+                if (from > to)
+                    throw new IllegalArgumentException("Empty range of group sizes " + part);
+                for (int x = from; x <= to; x++) {
+                    sizes.add(x);
+                }
+            } else {
+                sizes.add(Integer.parseInt(part.trim()));
             }
-        } else if ("f".equals(out) && maxBC != null) {
-            PrintWriter writer = new PrintWriter(new FileWriter(outFile));
-            writer.println("Group Centrality: " + currentMax);
+        }
+        int[] xs = new int[sizes.size()];
+        for (int i = 0; i < xs.length; i++) {
+            xs[i] = sizes.get(i);
+        }
+        return xs;
+    }
 
-            for(Integer v: maxBC) {
-                writer.println(v);
+    /**
+     * Moves options given as <code>--name value</code> or <code>--name=value</code> from the arguments into
+     * <code>options</code>.
+     *
+     * @return The remaining positional arguments
+     */
+    static String[] parseOptions(String[] args, Map<String, String> options) {
+        List<String> positional = new ArrayList<String>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].startsWith("--")) {
+                String name = args[i].substring(2);
+                int eq = name.indexOf('=');
+                if (eq >= 0) {
+                    options.put(name.substring(0, eq), name.substring(eq + 1));
+                } else if (i + 1 < args.length) {
+                    options.put(name, args[++i]);
+                } else {
+                    throw new IllegalArgumentException("Missing value of option --" + name);
+                }
+            } else {
+                positional.add(args[i]);
             }
-            writer.flush();
-            writer.close();
         }
+        return positional.toArray(new String[positional.size()]);
+    }
+
+    static String getOption(Map<String, String> options, String name, String defaultValue) {
+        String value = options.get(name);
+        return value == null ? defaultValue : value;
     }
 
 
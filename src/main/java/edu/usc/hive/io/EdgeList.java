@@ -0,0 +1,112 @@
+package edu.usc.hive.io;
+
+import edu.uci.ics.jung.graph.UndirectedGraph;
+import edu.uci.ics.jung.graph.UndirectedSparseGraph;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Weighted edges read from an edge list, as primitive arrays. The external vertex ids are interned into dense indices
+ * <code>0..n-1</code> in the order of their first appearance; edge <code>i</code> connects the dense vertices
+ * <code>getSource(i)</code> and <code>getTarget(i)</code>.
+ */
+public class EdgeList {
+
+    private final int[] vertexIds;
+    private final int vertexCount;
+    private final int[] sources;
+    private final int[] targets;
+    private final double[] weights;
+    private final int edgeCount;
+
+    EdgeList(int[] vertexIds, int vertexCount, int[] sources, int[] targets, double[] weights, int edgeCount) {
+        this.vertexIds = vertexIds;
+        this.vertexCount = vertexCount;
+        this.sources = sources;
+        this.targets = targets;
+        this.weights = weights;
+        this.edgeCount = edgeCount;
+    }
+
+    public int getVertexCount() {
+        return vertexCount;
+    }
+
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+
+    /**
+     * @return External id of the dense vertex
+     */
+    public int getVertexId(int v) {
+        return vertexIds[v];
+    }
+
+    public int getSource(int edge) {
+        return sources[edge];
+    }
+
+    public int getTarget(int edge) {
+        return targets[edge];
+    }
+
+    public double getWeight(int edge) {
+        return weights[edge];
+    }
+
+    /**
+     * @return 64-bit hash of the vertex ids and of the edges with their weights, in the order of the file
+     */
+    public long getFingerprint() {
+        long h = mix(vertexCount + 31L * edgeCount);
+        for (int v = 0; v < vertexCount; v++) {
+            h = mix(h ^ vertexIds[v]);
+        }
+        for (int i = 0; i < edgeCount; i++) {
+            h = mix(h ^ sources[i]);
+            h = mix(h ^ targets[i]);
+            h = mix(h ^ Double.doubleToLongBits(weights[i]));
+        }
+        return h;
+    }
+
+    /**
+     * Finalizer of the SplitMix64 generator - every input bit affects every output bit.
+     */
+    private static long mix(long z) {
+        z += 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Builds the JUNG graph over the external ids. Edge <code>i</code> gets the id <code>i + 1</code>, the line number
+     * of the edge in a file without blank lines.
+     *
+     * @see #getWeightMap()
+     */
+    public UndirectedGraph<Integer, Integer> toGraph() {
+        UndirectedGraph<Integer, Integer> g = new UndirectedSparseGraph<Integer, Integer>();
+        for (int v = 0; v < vertexCount; v++) {
+            g.addVertex(vertexIds[v]);
+        }
+        for (int i = 0; i < edgeCount; i++) {
+            g.addEdge(i + 1, vertexIds[sources[i]], vertexIds[targets[i]]);
+        }
+        return g;
+    }
+
+    /**
+     * @return Weights of the edges of {@link #toGraph()}
+     */
+    public Map<Integer, Double> getWeightMap() {
+        Map<Integer, Double> w = new HashMap<Integer, Double>(edgeCount * 2);
+        for (int i = 0; i < edgeCount; i++) {
+            w.put(i + 1, weights[i]);
+        }
+        return w;
+    }
+}
@@ -0,0 +1,264 @@
+package edu.usc.hive.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reads an edge list with one edge per line: <code>source vertex id,target vertex id[,weight]</code>. Edges without a
+ * weight weigh 1; weights have to be finite and non-negative. Blank lines and blanks around the fields are ignored.
+ * <p/>
+ * The file is memory-mapped and parsed in place: ids and weights are parsed from the bytes without creating strings,
+ * the ids are interned into dense indices and the edges are appended to primitive arrays. Weights take Clinger's fast
+ * path - a mantissa of at most 53 bits scaled by an exactly representable power of ten is correctly rounded by a
+ * single multiplication or division - and only other weights fall back to {@link Double#parseDouble(String)}.
+ */
+public class EdgeListLoader {
+
+    private static final long WINDOW = 1 << 30;  // bytes mapped at once
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final String path;
+    private MappedByteBuffer buffer;
+    private int pos;
+    private int end;    // end of the current line
+    private long line;
+    private byte[] scratch = new byte[64];
+
+    private IdInterner interner;
+    private int[] sources;
+    private int[] targets;
+    private double[] weights;
+    private int edgeCount;
+
+    private EdgeListLoader(String path) {
+        this.path = path;
+    }
+
+    /**
+     * @throws IllegalArgumentException if a line is malformed, with its number in the message
+     */
+    public static EdgeList load(String path) throws IOException {
+        return new EdgeListLoader(path).load();
+    }
+
+    private EdgeList load() throws IOException {
+        RandomAccessFile file = new RandomAccessFile(new File(path), "r");
+        try {
+            FileChannel channel = file.getChannel();
+            long size = channel.size();
+            int expectedEdges = (int) Math.min(Math.max(16, size / 16), 1 << 24);
+            interner = new IdInterner(Math.min(expectedEdges / 2, 1 << 20));
+            sources = new int[expectedEdges];
+            targets = new int[expectedEdges];
+            weights = new double[expectedEdges];
+
+            long base = 0;
+            while (base < size) {
+                long length = Math.min(WINDOW, size - base);
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, base, length);
+                boolean last = base + length == size;
+                pos = 0;
+                while (pos < length) {
+                    end = indexOfNewline(pos, (int) length);
+                    if (end < 0) {
+                        if (!last) break;           // the line continues in the next window
+                        end = (int) length;
+                    }
+                    line++;
+                    parseLine();
+                    pos = end + 1;
+                }
+                if (pos == 0 && !last)
+                    throw error("line longer than " + WINDOW + " bytes");
+                base += Math.min(pos, length);
+            }
+        } finally {
+            file.close();
+        }
+        return new EdgeList(interner.getIds(), interner.size(), sources, targets, weights, edgeCount);
+    }
+
+    private int indexOfNewline(int from, int limit) {
+        for (int i = from; i < limit; i++) {
+            if (buffer.get(i) == '\n') return i;
+        }
+        return -1;
+    }
+
+    private void parseLine() {
+        skipBlanks();
+        if (pos == end) return;     // blank line
+        int s = interner.intern(parseId("source vertex id"));
+        expectComma();
+        int t = interner.intern(parseId("target vertex id"));
+        skipBlanks();
+        double weight = 1d;
+        if (pos < end && buffer.get(pos) == ',') {
+            pos++;
+            skipBlanks();
+            int weightStart = pos;
+            weight = parseWeight();
+            // NaN, infinite and negative weights would only fail later, or silently give wrong scores
+            if (!(weight >= 0 && weight < Double.POSITIVE_INFINITY))
+                throw error("invalid weight '" + getText(weightStart, pos) + "', must be finite and non-negative");
+            skipBlanks();
+        }
+        if (pos < end)
+            throw error("unexpected '" + (char) buffer.get(pos) + "'");
+        addEdge(s, t, weight);
+    }
+
+    private void addEdge(int s, int t, double weight) {
+        if (edgeCount == sources.length) {
+            int capacity = edgeCount * 2;
+            sources = Arrays.copyOf(sources, capacity);
+            targets = Arrays.copyOf(targets, capacity);
+            weights = Arrays.copyOf(weights, capacity);
+        }
+        sources[edgeCount] = s;
+        targets[edgeCount] = t;
+        weights[edgeCount++] = weight;
+    }
+
+    private void skipBlanks() {
+        while (pos < end) {
+            byte b = buffer.get(pos);
+            if (b != ' ' && b != '\t' && b != '\r') break;
+            pos++;
+        }
+    }
+
+    private void expectComma() {
+        skipBlanks();
+        if (pos >= end || buffer.get(pos) != ',')
+            throw error("expected ','");
+        pos++;
+        skipBlanks();
+    }
+
+    private int parseId(String what) {
+        boolean negative = false;
+        if (pos < end && (buffer.get(pos) == '-' || buffer.get(pos) == '+')) {
+            negative = buffer.get(pos++) == '-';
+        }
+        int start = pos;
+        long value = 0;
+        while (pos < end) {
+            int d = buffer.get(pos) - '0';
+            if (d < 0 || d > 9) break;
+            value = value * 10 + d;
+            if (value > (long) Integer.MAX_VALUE + 1)
+                throw error(what + " out of the int range");
+            pos++;
+        }
+        if (pos == start)
+            throw error("expected " + what);
+        if (!negative && value > Integer.MAX_VALUE)
+            throw error(what + " out of the int range");
+        return (int) (negative ? -value : value);
+    }
+
+    private double parseWeight() {
+        int start = pos;
+        boolean negative = false;
+        if (pos < end && (buffer.get(pos) == '-' || buffer.get(pos) == '+')) {
+            negative = buffer.get(pos++) == '-';
+        }
+        long mantissa = 0;
+        int significantDigits = 0;
+        int exponent = 0;
+        boolean digits = false;
+        boolean exact = true;
+        while (pos < end && isDigit(buffer.get(pos))) {
+            int d = buffer.get(pos++) - '0';
+            digits = true;
+            if (significantDigits < 19) {
+                mantissa = mantissa * 10 + d;
+                if (mantissa > 0) significantDigits++;
+            } else {
+                exponent++;
+                exact &= d == 0;
+            }
+        }
+        if (pos < end && buffer.get(pos) == '.') {
+            pos++;
+            while (pos < end && isDigit(buffer.get(pos))) {
+                int d = buffer.get(pos++) - '0';
+                digits = true;
+                if (significantDigits < 19) {
+                    mantissa = mantissa * 10 + d;
+                    if (mantissa > 0) significantDigits++;
+                    exponent--;
+                } else {
+                    exact &= d == 0;
+                }
+            }
+        }
+        if (digits && pos < end && (buffer.get(pos) == 'e' || buffer.get(pos) == 'E')) {
+            pos++;
+            boolean negativeExponent = false;
+            if (pos < end && (buffer.get(pos) == '-' || buffer.get(pos) == '+')) {
+                negativeExponent = buffer.get(pos++) == '-';
+            }
+            int exponentStart = pos;
+            int e = 0;
+            while (pos < end && isDigit(buffer.get(pos))) {
+                e = Math.min(e * 10 + buffer.get(pos++) - '0', 100000);
+            }
+            if (pos == exponentStart) return parseWeightSlowly(start);
+            exponent += negativeExponent ? -e : e;
+        }
+        if (!digits || !exact || mantissa > MAX_EXACT_MANTISSA || exponent < -22 || exponent > 22) {
+            return parseWeightSlowly(start);
+        }
+        double value = exponent >= 0 ? mantissa * POWERS_OF_TEN[exponent] : mantissa / POWERS_OF_TEN[-exponent];
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parses the weight starting at the position with the JDK, for the forms the fast path doesn't cover (long
+     * mantissas, large exponents, NaN, Infinity, hexadecimal notation).
+     */
+    private double parseWeightSlowly(int start) {
+        pos = start;
+        while (pos < end) {
+            byte b = buffer.get(pos);
+            if (b == ',' || b == ' ' || b == '\t' || b == '\r') break;
+            pos++;
+        }
+        String weight = getText(start, pos);
+        try {
+            return Double.parseDouble(weight);
+        } catch (NumberFormatException e) {
+            throw error("invalid weight '" + weight + "'");
+        }
+    }
+
+    private String getText(int from, int to) {
+        int length = to - from;
+        if (scratch.length < length) {
+            scratch = new byte[length];
+        }
+        for (int i = 0; i < length; i++) {
+            scratch[i] = buffer.get(from + i);
+        }
+        return new String(scratch, 0, length, StandardCharsets.US_ASCII);
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(path + ":" + line + ": " + message);
+    }
+}
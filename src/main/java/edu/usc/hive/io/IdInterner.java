@@ -0,0 +1,85 @@
+package edu.usc.hive.io;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map of int ids to dense indices <code>0..n-1</code> given in the order of insertion, without
+ * boxing.
+ */
+class IdInterner {
+
+    private static final int EMPTY = -1;
+
+    private int[] keys;
+    private int[] values;
+    private int mask;
+    private int shift;
+    private int[] ids;
+    private int size;
+
+    IdInterner(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(16, expected * 2 - 1)) << 1;
+        allocate(capacity);
+        ids = new int[Math.max(16, expected)];
+    }
+
+    /**
+     * @return Dense index of the id, a new one if it has not been seen yet
+     */
+    int intern(int id) {
+        int slot = slot(id);
+        while (values[slot] != EMPTY) {
+            if (keys[slot] == id) return values[slot];
+            slot = (slot + 1) & mask;
+        }
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size * 2);
+        }
+        ids[size] = id;
+        keys[slot] = id;
+        values[slot] = size;
+        if (++size * 2 > keys.length) {
+            rehash();
+        }
+        return size - 1;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return Ids in the order of their dense indices, the array may be longer than {@link #size()}
+     */
+    int[] getIds() {
+        return ids;
+    }
+
+    private int slot(int id) {
+        return (id * 0x9E3779B9) >>> shift;  // Fibonacci hashing
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        shift = Integer.numberOfLeadingZeros(capacity) + 1;
+        Arrays.fill(values, EMPTY);
+    }
+
+    private void rehash() {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(keys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != EMPTY) {
+                int slot = slot(oldKeys[i]);
+                while (values[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+}
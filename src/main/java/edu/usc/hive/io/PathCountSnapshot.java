@@ -0,0 +1,232 @@
+package edu.usc.hive.io;
+
+import edu.usc.hive.scoring.PathBetweennessMatrix;
+import edu.usc.hive.shortestpath.OffHeapPathCountStore;
+import edu.usc.hive.shortestpath.PathCountStore;
+import edu.usc.hive.shortestpath.VertexIndex;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary snapshot of the preprocessing of a graph with integer vertex ids: the dense all-pairs statistics and,
+ * optionally, the complete B matrix, keyed by the fingerprint of the graph (see {@link EdgeList#getFingerprint()}).
+ * <p/>
+ * Layout, little-endian:
+ * <pre>
+ *  0  magic "NXGBSNAP"
+ *  8  int version, int flags (bit 0: B matrix present), int n, int 0
+ * 24  long graph fingerprint, 32 zero bytes
+ * 64  int[n] vertex ids in the order of the dense indices, int[n] accessible vertex counts
+ *     double[n*n] distances, double[n*n] path counts, double[n*n] partial dependencies, [double[n*n] B matrix]
+ * </pre>
+ * The matrices are row-major and are memory-mapped when the snapshot is read, so a run on the same graph starts
+ * without the <code>O(nm)</code> preprocessing and pages the statistics in on demand. Version 1 stored the path
+ * counts as longs; such snapshots are not read but rewritten.
+ */
+public class PathCountSnapshot {
+
+    public static final int VERSION = 2;
+
+    private static final long MAGIC = 0x50414E534247584EL;     // "NXGBSNAP" read as a little-endian long
+    private static final int FLAG_PATH_BETWEENNESS = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final int CHUNK_BYTES = 1 << 20;
+
+    private final long fingerprint;
+    private final VertexIndex<Integer> index;
+    private final PathCountStore store;
+    private final PathBetweennessMatrix pathBetweenness;
+
+    private PathCountSnapshot(long fingerprint, VertexIndex<Integer> index, PathCountStore store,
+                              PathBetweennessMatrix pathBetweenness) {
+        this.fingerprint = fingerprint;
+        this.index = index;
+        this.store = store;
+        this.pathBetweenness = pathBetweenness;
+    }
+
+    /**
+     * @return Fingerprint of the graph stored in the snapshot, or null if the file is not a snapshot of this version
+     */
+    public static Long readFingerprint(File file) throws IOException {
+        if (file.length() < HEADER_BYTES) return null;
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            ByteBuffer header = readHeader(raf.getChannel());
+            if (header.getLong(0) != MAGIC || header.getInt(8) != VERSION) return null;
+            return header.getLong(24);
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Maps a snapshot.
+     *
+     * @throws IllegalArgumentException if the file is not a snapshot of this version or is truncated
+     */
+    public static PathCountSnapshot read(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            ByteBuffer header = readHeader(channel);
+            if (header.getLong(0) != MAGIC)
+                throw new IllegalArgumentException(file + " is not a path count snapshot");
+            if (header.getInt(8) != VERSION)
+                throw new IllegalArgumentException(file + " has unsupported snapshot version " + header.getInt(8));
+            boolean hasPathBetweenness = (header.getInt(12) & FLAG_PATH_BETWEENNESS) != 0;
+            int n = header.getInt(16);
+            long fingerprint = header.getLong(24);
+            long matrixStart = matrixStart(n);
+            long matrixBytes = (long) n * n * 8;
+            if (channel.size() != matrixStart + matrixBytes * (hasPathBetweenness ? 4 : 3))
+                throw new IllegalArgumentException(file + " is truncated");
+
+            ByteBuffer vertices = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES, (long) n * 8)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            List<Integer> ids = new ArrayList<Integer>(n);
+            for (int v = 0; v < n; v++) {
+                ids.add(vertices.getInt(v * 4));
+            }
+            OffHeapPathCountStore store = OffHeapPathCountStore.map(channel, matrixStart, n, ByteOrder.LITTLE_ENDIAN);
+            for (int v = 0; v < n; v++) {
+                store.setAccessibleVerticesCount(v, vertices.getInt((n + v) * 4));
+            }
+
+            PathBetweennessMatrix pathBetweenness = null;
+            if (hasPathBetweenness) {
+                if (matrixBytes / 8 > PathCountStore.MAX_ARRAY_LENGTH)
+                    throw new IllegalArgumentException("B matrix of " + n + " vertices does not fit into an array");
+                double[] values = new double[n * n];
+                long position = matrixStart + 3 * matrixBytes;
+                for (int from = 0; from < values.length; from += CHUNK_BYTES / 8) {
+                    int length = Math.min(CHUNK_BYTES / 8, values.length - from);
+                    DoubleBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, position + from * 8L, length * 8L)
+                            .order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+                    chunk.get(values, from, length);
+                }
+                pathBetweenness = PathBetweennessMatrix.wrap(n, values);
+            }
+            return new PathCountSnapshot(fingerprint, new VertexIndex<Integer>(ids), store, pathBetweenness);
+        } finally {
+            raf.close();    // the mappings stay valid
+        }
+    }
+
+    /**
+     * Writes a snapshot into a temporary file first and then renames it, so that an interrupted run never leaves a
+     * truncated snapshot behind.
+     *
+     * @param pathBetweenness Complete B matrix, or null
+     */
+    public static void write(File file, long fingerprint, VertexIndex<Integer> index, PathCountStore store,
+                             PathBetweennessMatrix pathBetweenness) throws IOException {
+        int n = store.size();
+        File tmp = new File(file.getPath() + ".tmp");
+        RandomAccessFile raf = new RandomAccessFile(tmp, "rw");
+        try {
+            raf.setLength(0);
+            FileChannel channel = raf.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocateDirect(CHUNK_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putLong(MAGIC).putInt(VERSION).putInt(pathBetweenness != null ? FLAG_PATH_BETWEENNESS : 0)
+                    .putInt(n).putInt(0).putLong(fingerprint);
+            while (buffer.position() < HEADER_BYTES) buffer.put((byte) 0);
+            for (int v = 0; v < n; v++) {
+                ensureRemaining(channel, buffer, 4);
+                buffer.putInt(index.get(v));
+            }
+            for (int v = 0; v < n; v++) {
+                ensureRemaining(channel, buffer, 4);
+                buffer.putInt(store.getAccessibleVerticesCount(v));
+            }
+            for (int matrix = 0; matrix < (pathBetweenness != null ? 4 : 3); matrix++) {
+                for (int s = 0; s < n; s++) {
+                    for (int t = 0; t < n; t++) {
+                        ensureRemaining(channel, buffer, 8);
+                        switch (matrix) {
+                            case 0:
+                                buffer.putDouble(store.getDistance(s, t));
+                                break;
+                            case 1:
+                                buffer.putDouble(store.getPathCount(s, t));
+                                break;
+                            case 2:
+                                buffer.putDouble(store.getPartialDependency(s, t));
+                                break;
+                            default:
+                                buffer.putDouble(pathBetweenness.get(s, t));
+                        }
+                    }
+                }
+            }
+            flush(channel, buffer);
+            channel.force(false);
+        } finally {
+            raf.close();
+        }
+        if (!tmp.renameTo(file)) {
+            if (!file.delete() || !tmp.renameTo(file))
+                throw new IOException("Cannot replace " + file);
+        }
+    }
+
+    private static ByteBuffer readHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        while (header.hasRemaining()) {
+            if (channel.read(header, header.position()) < 0)
+                throw new IllegalArgumentException("Path count snapshot is truncated");
+        }
+        return header;
+    }
+
+    private static long matrixStart(int n) {
+        return HEADER_BYTES + (long) n * 8;     // ids and counts keep the matrices 8-byte aligned
+    }
+
+    private static void ensureRemaining(FileChannel channel, ByteBuffer buffer, int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush(channel, buffer);
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * @return Fingerprint of the graph the statistics were computed for
+     */
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * @return Dense indices of the vertices - the order of the rows and columns
+     */
+    public VertexIndex<Integer> getVertexIndex() {
+        return index;
+    }
+
+    public PathCountStore getStore() {
+        return store;
+    }
+
+    /**
+     * @return The complete B matrix, or null if it wasn't stored
+     */
+    public PathBetweennessMatrix getPathBetweenness() {
+        return pathBetweenness;
+    }
+}
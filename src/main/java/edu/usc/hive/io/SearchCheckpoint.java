@@ -0,0 +1,216 @@
+package edu.usc.hive.io;
+
+import edu.usc.hive.search.TopK;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Progress of the exhaustive searches of a run, kept in a small file so that a killed run resumes where it was
+ * instead of at the first combination. A search enumerates the ranks of its combinations in order; its progress is
+ * the rank up to which all combinations were scored and the best groups among them. Every search has its own
+ * entry, keyed by its candidates and parameters, so the searches of all group sizes and components share a file.
+ * <p/>
+ * The file is bound to the fingerprint of the graph (see {@link EdgeList#getFingerprint()}): progress made on another
+ * graph is discarded. Layout, big-endian:
+ * <pre>
+ *  magic "NXGBCKPT", int version, long graph fingerprint, int number of searches, per search:
+ *  long key, int x, int k, long next rank, long number of combinations, int number of groups,
+ *  per group: double score, int[x] positions of the members in the candidate list
+ * </pre>
+ * The file is written into a temporary file next to it and renamed, so it is never left half-written.
+ */
+public class SearchCheckpoint {
+
+    public static final int VERSION = 1;
+
+    private static final long MAGIC = 0x4E584742434B5054L;     // "NXGBCKPT"
+
+    private final File file;
+    private final long fingerprint;
+    private final long intervalMillis;
+    private final Map<Long, Progress> searches = new LinkedHashMap<Long, Progress>();
+    private long lastWrite = System.currentTimeMillis();
+
+    /**
+     * Progress of one search.
+     */
+    public static class Progress {
+        private final int x;
+        private final int k;
+        private final long nextRank;
+        private final long count;
+        private final double[] scores;
+        private final int[][] groups;
+
+        private Progress(int x, int k, long nextRank, long count, double[] scores, int[][] groups) {
+            this.x = x;
+            this.k = k;
+            this.nextRank = nextRank;
+            this.count = count;
+            this.scores = scores;
+            this.groups = groups;
+        }
+
+        /**
+         * @return Rank of the first combination that was not scored
+         */
+        public long getNextRank() {
+            return nextRank;
+        }
+
+        public boolean isDone() {
+            return nextRank == count;
+        }
+
+        /**
+         * @return Heap of the best groups of the combinations scored so far
+         */
+        public TopK getBest() {
+            TopK best = new TopK(k);
+            for (int i = 0; i < scores.length; i++) {
+                best.offer(scores[i], groups[i]);
+            }
+            return best;
+        }
+    }
+
+    private SearchCheckpoint(File file, long fingerprint, long intervalMillis) {
+        this.file = file;
+        this.fingerprint = fingerprint;
+        this.intervalMillis = intervalMillis;
+    }
+
+    /**
+     * Opens the checkpoint file, reading the progress if the file exists and was written for the graph.
+     *
+     * @param fingerprint    Fingerprint of the graph and of everything else the scores depend on
+     * @param intervalMillis Least time between two writes of {@link #writeIfDue()}
+     * @throws IllegalArgumentException if the file is not a checkpoint of this version or is truncated
+     */
+    public static SearchCheckpoint open(File file, long fingerprint, long intervalMillis) throws IOException {
+        if (intervalMillis < 0)
+            throw new IllegalArgumentException("Checkpoint interval must not be negative");
+        SearchCheckpoint checkpoint = new SearchCheckpoint(file, fingerprint, intervalMillis);
+        if (file.exists()) {
+            checkpoint.read();
+        }
+        return checkpoint;
+    }
+
+    /**
+     * @return Progress of the search, or null if it has not started or was run with other parameters
+     */
+    public synchronized Progress get(long key, int x, int k, long count) {
+        Progress progress = searches.get(key);
+        if (progress == null || progress.x != x || progress.k != k || progress.count != count) return null;
+        return progress;
+    }
+
+    /**
+     * Records that all combinations of the search below the rank are scored. The best groups are copied.
+     */
+    public synchronized void update(long key, int x, long nextRank, long count, TopK best) {
+        if (nextRank < 0 || nextRank > count)
+            throw new IllegalArgumentException("Rank " + nextRank + " out of [0, " + count + "]");
+        double[] scores = new double[best.size()];
+        int[][] groups = new int[best.size()][];
+        for (int i = 0; i < scores.length; i++) {
+            scores[i] = best.getScore(i);
+            groups[i] = best.getGroup(i).clone();
+        }
+        searches.put(key, new Progress(x, best.getCapacity(), nextRank, count, scores, groups));
+    }
+
+    /**
+     * @return Least time between two writes of {@link #writeIfDue()}
+     */
+    public long getIntervalMillis() {
+        return intervalMillis;
+    }
+
+    /**
+     * Writes the file if the interval has passed since it was last written.
+     */
+    public synchronized void writeIfDue() throws IOException {
+        if (System.currentTimeMillis() - lastWrite >= intervalMillis) {
+            write();
+        }
+    }
+
+    public synchronized void write() throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+        try {
+            out.writeLong(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(fingerprint);
+            out.writeInt(searches.size());
+            for (Map.Entry<Long, Progress> e : searches.entrySet()) {
+                Progress p = e.getValue();
+                out.writeLong(e.getKey());
+                out.writeInt(p.x);
+                out.writeInt(p.k);
+                out.writeLong(p.nextRank);
+                out.writeLong(p.count);
+                out.writeInt(p.scores.length);
+                for (int i = 0; i < p.scores.length; i++) {
+                    out.writeDouble(p.scores[i]);
+                    for (int position : p.groups[i]) {
+                        out.writeInt(position);
+                    }
+                }
+            }
+        } finally {
+            out.close();
+        }
+        if (!tmp.renameTo(file)) {
+            if (!file.delete() || !tmp.renameTo(file))
+                throw new IOException("Cannot rename " + tmp + " to " + file);
+        }
+        lastWrite = System.currentTimeMillis();
+    }
+
+    private void read() throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (in.readLong() != MAGIC)
+                throw new IllegalArgumentException(file + " is not a search checkpoint");
+            int version = in.readInt();
+            if (version != VERSION)
+                throw new IllegalArgumentException(file + " has unsupported checkpoint version " + version);
+            if (in.readLong() != fingerprint) return;   // another graph, the file is overwritten
+            int count = in.readInt();
+            for (int s = 0; s < count; s++) {
+                long key = in.readLong();
+                int x = in.readInt();
+                int k = in.readInt();
+                long nextRank = in.readLong();
+                long combinations = in.readLong();
+                int size = in.readInt();
+                double[] scores = new double[size];
+                int[][] groups = new int[size][x];
+                for (int i = 0; i < size; i++) {
+                    scores[i] = in.readDouble();
+                    for (int j = 0; j < x; j++) {
+                        groups[i][j] = in.readInt();
+                    }
+                }
+                searches.put(key, new Progress(x, k, nextRank, combinations, scores, groups));
+            }
+        } catch (EOFException e) {
+            throw new IllegalArgumentException(file + " is truncated", e);
+        } finally {
+            in.close();
+        }
+    }
+}
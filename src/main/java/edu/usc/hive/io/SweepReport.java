@@ -0,0 +1,155 @@
+package edu.usc.hive.io;
+
+import edu.usc.hive.search.SearchResult;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Results of the searches of a sweep over several group sizes on one graph, written as CSV or JSON: per group size
+ * the best groups ranked by their scores, the wall time of the search and the number of groups scored per second.
+ */
+public class SweepReport {
+
+    private final String graph;
+    private final int vertexCount;
+    private final long preprocessingNanos;
+    private final List<Entry> entries = new ArrayList<Entry>();
+
+    private static class Entry {
+        final int x;
+        final String search;
+        final SearchResult<?> result;
+        final long nanos;
+        final Double exhaustiveScore;
+
+        Entry(int x, String search, SearchResult<?> result, long nanos, Double exhaustiveScore) {
+            this.x = x;
+            this.search = search;
+            this.result = result;
+            this.nanos = nanos;
+            this.exhaustiveScore = exhaustiveScore;
+        }
+
+        double getMillis() {
+            return nanos / 1e6;
+        }
+
+        double getGroupsPerSecond() {
+            return nanos == 0 ? 0 : result.getEvaluations() * 1e9 / nanos;
+        }
+    }
+
+    /**
+     * @param graph              Name of the graph
+     * @param vertexCount        Number of vertices of the graph
+     * @param preprocessingNanos Time of the all-pairs statistics and of the B matrix shared by all searches
+     */
+    public SweepReport(String graph, int vertexCount, long preprocessingNanos) {
+        this.graph = graph;
+        this.vertexCount = vertexCount;
+        this.preprocessingNanos = preprocessingNanos;
+    }
+
+    /**
+     * @param exhaustiveScore Optimum the result of an approximate search was compared with, or null
+     */
+    public void add(int x, String search, SearchResult<?> result, long nanos, Double exhaustiveScore) {
+        entries.add(new Entry(x, search, result, nanos, exhaustiveScore));
+    }
+
+    /**
+     * One line per group size and rank, vertices of a group separated by semicolons. A group size without any group
+     * gets a single line with empty rank, score and group.
+     */
+    public void writeCsv(PrintWriter writer) {
+        writer.println("x,search,rank,score,group,time_ms,evaluations,groups_per_second,exhaustive_score");
+        for (Entry e : entries) {
+            String stats = "," + format(e.getMillis()) + "," + e.result.getEvaluations() + ","
+                    + format(e.getGroupsPerSecond()) + "," + (e.exhaustiveScore == null ? "" : e.exhaustiveScore);
+            List<? extends Set<?>> groups = e.result.getGroups();
+            if (groups.isEmpty()) {
+                writer.println(e.x + "," + e.search + ",,," + stats);
+            }
+            for (int i = 0; i < groups.size(); i++) {
+                writer.println(e.x + "," + e.search + "," + (i + 1) + "," + e.result.getScore(i) + ","
+                        + join(groups.get(i), ";") + stats);
+            }
+        }
+        writer.flush();
+    }
+
+    public void writeJson(PrintWriter writer) {
+        writer.println("{");
+        writer.println("  \"graph\": \"" + escape(graph) + "\",");
+        writer.println("  \"vertices\": " + vertexCount + ",");
+        writer.println("  \"preprocessing_ms\": " + format(preprocessingNanos / 1e6) + ",");
+        writer.println("  \"results\": [");
+        for (Iterator<Entry> it = entries.iterator(); it.hasNext(); ) {
+            Entry e = it.next();
+            boolean found = e.result.getGroup() != null;
+            writer.println("    {\"x\": " + e.x + ", \"search\": \"" + e.search + "\""
+                    + ", \"score\": " + (found ? json(e.result.getScore()) : "null")
+                    + ", \"group\": " + (found ? "[" + join(e.result.getGroup(), ", ") + "]" : "null")
+                    + ", \"ranked\": " + ranked(e.result)
+                    + ", \"time_ms\": " + format(e.getMillis())
+                    + ", \"evaluations\": " + e.result.getEvaluations()
+                    + ", \"groups_per_second\": " + format(e.getGroupsPerSecond())
+                    + (e.exhaustiveScore == null ? "" : ", \"exhaustive_score\": " + json(e.exhaustiveScore))
+                    + "}" + (it.hasNext() ? "," : ""));
+        }
+        writer.println("  ]");
+        writer.println("}");
+        writer.flush();
+    }
+
+    /**
+     * @return The groups with their scores as a JSON array, best group first
+     */
+    private static String ranked(SearchResult<?> result) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < result.getGroups().size(); i++) {
+            if (i > 0) sb.append(", ");
+            sb.append("{\"rank\": ").append(i + 1).append(", \"score\": ").append(json(result.getScore(i)))
+                    .append(", \"group\": [").append(join(result.getGroups().get(i), ", ")).append("]}");
+        }
+        return sb.append("]").toString();
+    }
+
+    private static String join(Iterable<?> values, String separator) {
+        if (values == null) return "";
+        StringBuilder sb = new StringBuilder();
+        for (Object v : values) {
+            if (sb.length() > 0) sb.append(separator);
+            sb.append(v);
+        }
+        return sb.toString();
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+
+    private static String json(double value) {
+        return Double.isNaN(value) || Double.isInfinite(value) ? "null" : Double.toString(value);
+    }
+
+    private static String escape(String s) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
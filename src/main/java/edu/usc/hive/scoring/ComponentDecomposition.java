@@ -0,0 +1,149 @@
+package edu.usc.hive.scoring;
+
+import edu.uci.ics.jung.algorithms.cluster.WeakComponentClusterer;
+import edu.uci.ics.jung.graph.UndirectedGraph;
+import edu.uci.ics.jung.graph.UndirectedSparseGraph;
+import edu.uci.ics.jung.graph.util.Pair;
+import edu.usc.hive.shortestpath.PathCountOptions;
+import org.apache.commons.collections15.Transformer;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The connected components of a graph, each with its own {@link SuccessiveGroupBetweenness} on the subgraph induced by
+ * the component. A group is connected only if all its members are in one component, so groups are drawn from single
+ * components and never have to be rejected, and the all-pairs statistics and the B matrices take
+ * <code>sum n_c^2</code> instead of <code>n^2</code> entries.
+ * <p/>
+ * The scores equal those on the whole graph: shortest paths never leave a component, and the periphery correction
+ * depends only on the size of the group and of its component.
+ */
+public class ComponentDecomposition<V, E> {
+
+    private final List<Set<V>> components;
+    private final List<SuccessiveGroupBetweenness<V, E>> scorers;
+
+    private ComponentDecomposition(List<Set<V>> components, List<SuccessiveGroupBetweenness<V, E>> scorers) {
+        this.components = components;
+        this.scorers = scorers;
+    }
+
+    /**
+     * Splits the graph into its connected components and computes the statistics of each. A connected graph is
+     * scored as it is, without copying it.
+     *
+     * @param graph            Graph on which the score will be computed - may be disconnected.
+     * @param weight           Mapping <code>E</code>-><code>R</code> representing edges's weights
+     * @param includePeriphery True if paths starting or ending in a group should be included, false otherwise
+     * @param options          Settings of the all-pairs shortest path counting of every component
+     */
+    public static <V, E> ComponentDecomposition<V, E> decompose(UndirectedGraph<V, E> graph, Transformer<E, Double> weight,
+                                                                boolean includePeriphery, PathCountOptions options) {
+        Set<Set<V>> clusters = new WeakComponentClusterer<V, E>().transform(graph);
+        if (clusters.size() <= 1) {
+            return whole(graph, new SuccessiveGroupBetweenness<V, E>(graph, weight, includePeriphery, options));
+        }
+
+        // components in the order of their first vertices, so that runs are reproducible
+        Map<V, Integer> componentOf = new HashMap<V, Integer>(graph.getVertexCount() * 2);
+        List<Set<V>> components = new ArrayList<Set<V>>(clusters.size());
+        List<UndirectedGraph<V, E>> subgraphs = new ArrayList<UndirectedGraph<V, E>>(clusters.size());
+        Map<V, Set<V>> clusterOf = new HashMap<V, Set<V>>(graph.getVertexCount() * 2);
+        for (Set<V> cluster : clusters) {
+            for (V v : cluster) {
+                clusterOf.put(v, cluster);
+            }
+        }
+        for (V v : graph.getVertices()) {
+            if (componentOf.containsKey(v)) continue;
+            Set<V> cluster = clusterOf.get(v);
+            UndirectedGraph<V, E> subgraph = newSubgraph(graph);
+            for (V u : cluster) {
+                componentOf.put(u, components.size());
+                subgraph.addVertex(u);
+            }
+            components.add(cluster);
+            subgraphs.add(subgraph);
+        }
+        for (E e : graph.getEdges()) {
+            Pair<V> endpoints = graph.getEndpoints(e);
+            subgraphs.get(componentOf.get(endpoints.getFirst())).addEdge(e, endpoints.getFirst(), endpoints.getSecond());
+        }
+
+        List<SuccessiveGroupBetweenness<V, E>> scorers = new ArrayList<SuccessiveGroupBetweenness<V, E>>(components.size());
+        for (UndirectedGraph<V, E> subgraph : subgraphs) {
+            scorers.add(new SuccessiveGroupBetweenness<V, E>(subgraph, weight, includePeriphery, options));
+        }
+        return new ComponentDecomposition<V, E>(components, scorers);
+    }
+
+    /**
+     * @return An empty graph of the same kind as the whole one, e.g. with or without parallel edges, or an
+     * {@link UndirectedSparseGraph} if the class of the graph has no constructor without arguments
+     * @throws IllegalArgumentException if the constructor fails
+     */
+    @SuppressWarnings("unchecked")
+    private static <V, E> UndirectedGraph<V, E> newSubgraph(UndirectedGraph<V, E> graph) {
+        try {
+            return (UndirectedGraph<V, E>) graph.getClass().getDeclaredConstructor().newInstance();
+        } catch (NoSuchMethodException e) {
+            return new UndirectedSparseGraph<V, E>();
+        } catch (InvocationTargetException e) {
+            throw new IllegalArgumentException("Cannot create a subgraph of " + graph.getClass() + ": "
+                    + e.getCause(), e.getCause());
+        } catch (InstantiationException e) {
+            throw new IllegalArgumentException("Cannot create a subgraph of abstract " + graph.getClass(), e);
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("Cannot access the constructor of " + graph.getClass(), e);
+        }
+    }
+
+    /**
+     * Uses a single scorer of the whole graph, e.g. one on statistics loaded from a snapshot. Groups of a
+     * disconnected graph are then rejected by the scorer.
+     */
+    public static <V, E> ComponentDecomposition<V, E> whole(UndirectedGraph<V, E> graph,
+                                                            SuccessiveGroupBetweenness<V, E> scorer) {
+        List<Set<V>> components = new ArrayList<Set<V>>(1);
+        components.add(new HashSet<V>(graph.getVertices()));
+        List<SuccessiveGroupBetweenness<V, E>> scorers = new ArrayList<SuccessiveGroupBetweenness<V, E>>(1);
+        scorers.add(scorer);
+        return new ComponentDecomposition<V, E>(components, scorers);
+    }
+
+    /**
+     * @return Number of components
+     */
+    public int size() {
+        return components.size();
+    }
+
+    /**
+     * @return Vertices of the component
+     */
+    public Set<V> getComponent(int i) {
+        return components.get(i);
+    }
+
+    public SuccessiveGroupBetweenness<V, E> getScorer(int i) {
+        return scorers.get(i);
+    }
+
+    /**
+     * Computes the complete B matrix of every component (see
+     * {@link SuccessiveGroupBetweenness#precomputePathBetweenness(int)}).
+     */
+    public void precomputePathBetweenness(int parallelism) {
+        for (SuccessiveGroupBetweenness<V, E> scorer : scorers) {
+            if (scorer.getPathBetweennessMatrix() == null) {
+                scorer.precomputePathBetweenness(parallelism);
+            }
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package edu.usc.hive.scoring;
+
+/**
+ * Reusable scratch space of {@link SuccessiveGroupBetweenness#getVertexGroupScore(int[], int, GroupScoreContext)}:
+ * the dense indices of the group members, their <code>k x k</code> distance matrix and two ping-pong buffers for each
+ * of the 'sigma with ~' and 'B with ~' matrices of Puzis et al. (2007). A context must not be shared between threads.
+ */
+public class GroupScoreContext {
+
+    int[] members;
+    double[] distances;
+    double[] sigma;
+    double[] sigmaNext;
+    double[] pathBetweenness;
+    double[] pathBetweennessNext;
+
+    /**
+     * @param capacity Expected group size - the context grows if a larger group is scored
+     */
+    public GroupScoreContext(int capacity) {
+        allocate(Math.max(1, capacity));
+    }
+
+    void ensureCapacity(int k) {
+        if (members.length < k) {
+            allocate(k);
+        }
+    }
+
+    private void allocate(int capacity) {
+        members = new int[capacity];
+        distances = new double[capacity * capacity];
+        sigma = new double[capacity * capacity];
+        sigmaNext = new double[capacity * capacity];
+        pathBetweenness = new double[capacity * capacity];
+        pathBetweennessNext = new double[capacity * capacity];
+    }
+
+    void swap() {
+        double[] tmp = sigma;
+        sigma = sigmaNext;
+        sigmaNext = tmp;
+        tmp = pathBetweenness;
+        pathBetweenness = pathBetweennessNext;
+        pathBetweennessNext = tmp;
+    }
+}
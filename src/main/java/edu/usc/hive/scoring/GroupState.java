@@ -0,0 +1,125 @@
+package edu.usc.hive.scoring;
+
+import edu.usc.hive.shortestpath.PathCountStore;
+
+/**
+ * A group that is built incrementally, scored with the successive algorithm of Puzis et al. (2007).
+ * <p/>
+ * The state keeps one level of the 'sigma with ~' and 'B with ~' matrices per member: level <code>i</code> holds the
+ * entries among all current members after the updates of the first <code>i</code> members. Pushing a member only
+ * computes its own row and column through all levels, which costs <code>O(k^2)</code> instead of the
+ * <code>O(k^3)</code> of scoring the extended group from scratch, and popping it is free. Scores are identical to
+ * {@link SuccessiveGroupBetweenness#getVertexGroupScore(int[], int, GroupScoreContext)} with the members in push
+ * order.
+ * <p/>
+ * Members are given by dense vertex indices. A state must not be shared between threads.
+ */
+public class GroupState implements IncrementalGroup {
+
+    private final SuccessiveGroupBetweenness<?, ?> scorer;
+    private final PathCountStore store;
+    private final int capacity;
+    private final int[] members;
+    private final double[] dist;
+    private final double[][] sigma;             // per level
+    private final double[][] pathBetweenness;   // per level
+    private final double[] coverage;            // sum of 'B with ~'(v, v) of the first i members, per level
+    private int size;
+
+    GroupState(SuccessiveGroupBetweenness<?, ?> scorer, int capacity) {
+        this.scorer = scorer;
+        this.store = scorer.getStore();
+        this.capacity = capacity;
+        this.members = new int[capacity];
+        this.dist = new double[capacity * capacity];
+        this.sigma = new double[capacity + 1][capacity * capacity];
+        this.pathBetweenness = new double[capacity + 1][capacity * capacity];
+        this.coverage = new double[capacity + 1];
+    }
+
+    /**
+     * Adds a member to the group.
+     *
+     * @param u Dense index of the new member
+     * @throws IllegalArgumentException if the group would not be connected
+     */
+    public void push(int u) {
+        if (size == capacity)
+            throw new IllegalStateException("The group is full");
+        int d = size;
+        int c = capacity;
+        members[d] = u;
+        // level 0: the plain statistics of the pairs with the new member
+        for (int m = 0; m <= d; m++) {
+            double um = store.getDistance(u, members[m]);
+            if (!scorer.isConnected && Double.isInfinite(um))
+                throw new IllegalArgumentException("The group is not connected!");
+            dist[d * c + m] = um;
+            dist[m * c + d] = store.getDistance(members[m], u);
+            sigma[0][d * c + m] = store.getPathCount(u, members[m]);
+            sigma[0][m * c + d] = store.getPathCount(members[m], u);
+            pathBetweenness[0][d * c + m] = scorer.getPathBetweenness(u, members[m]);
+            pathBetweenness[0][m * c + d] = scorer.getPathBetweenness(members[m], u);
+        }
+        // levels 1..d: apply the updates of the earlier members to the new row and column
+        for (int v = 0; v < d; v++) {
+            for (int m = 0; m <= d; m++) {
+                SuccessiveGroupBetweenness.updatePair(dist, sigma[v], pathBetweenness[v], sigma[v + 1],
+                        pathBetweenness[v + 1], c, d, m, v);
+                if (m != d) {
+                    SuccessiveGroupBetweenness.updatePair(dist, sigma[v], pathBetweenness[v], sigma[v + 1],
+                            pathBetweenness[v + 1], c, m, d, v);
+                }
+            }
+        }
+        coverage[d + 1] = coverage[d] + pathBetweenness[d][d * c + d];
+        size++;
+    }
+
+    /**
+     * Removes the member added last.
+     */
+    public void pop() {
+        if (size == 0)
+            throw new IllegalStateException("The group is empty");
+        size--;
+    }
+
+    /**
+     * Removes members until the group has the given size.
+     */
+    public void popTo(int newSize) {
+        if (newSize < 0 || newSize > size)
+            throw new IllegalArgumentException("Cannot shrink a group of " + size + " to " + newSize);
+        size = newSize;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return Dense index of the <code>i</code>-th member
+     */
+    public int get(int i) {
+        return members[i];
+    }
+
+    /**
+     * @return Group betweenness including the periphery, i.e. before the periphery correction
+     */
+    public double getCoverage() {
+        return coverage[size] / 2;  // undirected graph
+    }
+
+    /**
+     * @return Betweenness of the group, as defined by the scorer
+     */
+    public double getScore() {
+        return coverage[size] / 2 - scorer.getPeripheryCorrection(members, size);
+    }
+}
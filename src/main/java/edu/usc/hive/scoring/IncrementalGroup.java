@@ -0,0 +1,35 @@
+package edu.usc.hive.scoring;
+
+/**
+ * A group that is built and scored incrementally, one member at a time, so that groups sharing a prefix of members -
+ * e.g. consecutive combinations of an exhaustive search - share its work. Members are given by dense vertex indices
+ * (see {@link IndexedGroupScorer#getVertexIndex()}). A group must not be shared between threads.
+ */
+public interface IncrementalGroup {
+
+    /**
+     * Adds a member to the group.
+     *
+     * @param u Dense index of the new member
+     * @throws IllegalArgumentException if the group would not be admissible, e.g. not connected; the group is then
+     * left as it was
+     */
+    public void push(int u);
+
+    /**
+     * Removes the member added last.
+     */
+    public void pop();
+
+    /**
+     * Removes members until the group has the given size.
+     */
+    public void popTo(int newSize);
+
+    public int size();
+
+    /**
+     * @return Score of the group, as defined by the scorer
+     */
+    public double getScore();
+}
@@ -0,0 +1,33 @@
+package edu.usc.hive.scoring;
+
+import edu.usc.hive.shortestpath.VertexIndex;
+
+/**
+ * Scorer of groups given by the dense indices of their members (see {@link VertexIndex}), which the searches use to
+ * score groups without building sets of vertices.
+ */
+public interface IndexedGroupScorer<V> extends VertexGroupScorer<V, Double> {
+
+    /**
+     * @return Dense indices of the vertices, or null if the scorer has none and scores sets only
+     */
+    public VertexIndex<V> getVertexIndex();
+
+    /**
+     * Computes the score of the group. Has to be thread-safe.
+     *
+     * @param group Indices of the group members - <code>group[0..size-1]</code> is read
+     * @param size  Number of members
+     * @return Score of the group
+     * @throws IllegalArgumentException if the group is not admissible, e.g. not connected
+     */
+    public double getVertexGroupScore(int[] group, int size);
+
+    /**
+     * @param capacity Largest number of members
+     * @return A new empty group that is scored incrementally, with the same scores as
+     * {@link #getVertexGroupScore(int[], int)} of its members in push order
+     * @throws IllegalStateException if the scorer cannot score groups incrementally, e.g. without dense indices
+     */
+    public IncrementalGroup newGroupState(int capacity);
+}
@@ -0,0 +1,205 @@
+package edu.usc.hive.scoring;
+
+import edu.usc.hive.shortestpath.PathCountStore;
+import edu.usc.hive.util.Parallel;
+
+/**
+ * The complete B matrix of Puzis et al. (2007) in a flat row-major array: <code>B(x, y)</code> is the betweenness of
+ * the paths starting at any vertex and going first through <code>x</code> and then through <code>y</code> (Eq. 6).
+ * It is computed eagerly from the dense all-pairs statistics, one block of rows per thread, and is immutable once
+ * built, so any number of scoring threads can read it without synchronization.
+ * <p/>
+ * Entry <code>B(x, y)</code> sums a contribution of every source <code>s</code>, which depends only on the rows of
+ * <code>s</code> and <code>x</code> of the statistics. When the rows of some sources are recomputed after a change of
+ * the graph (see {@link #update(PathCountStore, Rows, int)}), the rows of B of these sources are recomputed, and the
+ * other entries are corrected by the difference of the old and the new contributions of these sources, in
+ * <code>O(a n^2)</code> for <code>a</code> recomputed sources instead of <code>O(n^3)</code>. The corrected entries
+ * may differ from a rebuilt matrix in the last bits.
+ */
+public class PathBetweennessMatrix {
+
+    private final int n;
+    private final double[] values;
+
+    private PathBetweennessMatrix(int n, double[] values) {
+        this.n = n;
+        this.values = values;
+    }
+
+    /**
+     * Computes all entries of the B matrix.
+     *
+     * @param store       Dense all-pairs statistics
+     * @param parallelism Number of threads
+     * @return The B matrix
+     */
+    public static PathBetweennessMatrix build(final PathCountStore store, int parallelism) {
+        final int n = store.size();
+        if ((long) n * n > PathCountStore.MAX_ARRAY_LENGTH)
+            throw new IllegalArgumentException("B matrix of " + n + " vertices does not fit into an array");
+        final double[] values = new double[n * n];
+        Parallel.forEachRange(n, parallelism, new Parallel.RangeTask() {
+            public void run(int from, int to) {
+                for (int x = from; x < to; x++) {
+                    for (int y = 0; y < n; y++) {
+                        values[x * n + y] = compute(store, x, y);
+                    }
+                }
+            }
+        });
+        return new PathBetweennessMatrix(n, values);
+    }
+
+    /**
+     * Computes a single entry of the B matrix using Eq. 6 from Puzis et al. (2007).
+     *
+     * @param store Dense all-pairs statistics
+     * @param x     Index of the first vertex
+     * @param y     Index of the second vertex
+     * @return <code>B(x, y)</code>
+     */
+    public static double compute(PathCountStore store, int x, int y) {
+        double pathBetXY = 0;
+        double x2y = store.getDistance(x, y);
+        double sigmaXY = store.getPathCount(x, y);
+        for (int s = 0; s < store.size(); s++) {
+            double deltaSY = store.getPartialDependency(s, y);
+            double sigmaSY = store.getPathCount(s, y);
+            if (deltaSY == 0 || sigmaSY == 0) {
+                continue;
+            }
+            pathBetXY += contribution(store.getDistance(s, x), store.getDistance(s, y), store.getPathCount(s, x),
+                    sigmaSY, deltaSY, x2y, sigmaXY);
+        }
+        return pathBetXY;
+    }
+
+    /**
+     * Contribution of source <code>s</code> to <code>B(x, y)</code>.
+     */
+    private static double contribution(double s2x, double s2y, double sigmaSX, double sigmaSY, double deltaSY,
+                                       double x2y, double sigmaXY) {
+        if (deltaSY == 0 || sigmaSY == 0) {
+            return 0;
+        }
+        // x lies on a shortest path from s to y iff the Bellman criterion holds
+        if (Double.isInfinite(s2x) || Double.isInfinite(x2y) || s2y < s2x + x2y) {
+            return 0;
+        }
+        double sigmaSXY = sigmaSX * sigmaXY;
+        if (sigmaSXY == 0) {
+            return 0;
+        }
+        return deltaSY * (sigmaSXY / sigmaSY);
+    }
+
+    /**
+     * Computes the B matrix after the rows of some sources were recomputed, from this matrix and the old rows. The
+     * matrix itself is not modified.
+     *
+     * @param store       Dense all-pairs statistics with the recomputed rows
+     * @param old         Rows of the recomputed sources before they were recomputed
+     * @param parallelism Number of threads
+     * @return The B matrix of the recomputed statistics
+     */
+    public PathBetweennessMatrix update(final PathCountStore store, final Rows old, int parallelism) {
+        if (store.size() != n)
+            throw new IllegalArgumentException("Path counts of " + store.size() + " vertices don't match the B matrix");
+        final boolean[] recomputed = new boolean[n];
+        for (int s : old.sources) {
+            recomputed[s] = true;
+        }
+        final double[] updated = new double[n * n];
+        Parallel.forEachRange(n, parallelism, new Parallel.RangeTask() {
+            public void run(int from, int to) {
+                for (int x = from; x < to; x++) {
+                    for (int y = 0; y < n; y++) {
+                        updated[x * n + y] = recomputed[x]
+                                ? compute(store, x, y) : values[x * n + y] + getChange(store, old, x, y);
+                    }
+                }
+            }
+        });
+        return new PathBetweennessMatrix(n, updated);
+    }
+
+    /**
+     * Computes by how much the recomputed rows of some sources change <code>B(x, y)</code>. Valid only if the row of
+     * <code>x</code> was not recomputed.
+     *
+     * @param store Dense all-pairs statistics with the recomputed rows
+     * @param old   Rows of the recomputed sources before they were recomputed
+     */
+    public static double getChange(PathCountStore store, Rows old, int x, int y) {
+        double x2y = store.getDistance(x, y);
+        double sigmaXY = store.getPathCount(x, y);
+        double change = 0;
+        for (int i = 0; i < old.sources.length; i++) {
+            int s = old.sources[i];
+            change += contribution(store.getDistance(s, x), store.getDistance(s, y), store.getPathCount(s, x),
+                    store.getPathCount(s, y), store.getPartialDependency(s, y), x2y, sigmaXY)
+                    - contribution(old.distances[i][x], old.distances[i][y], old.pathCounts[i][x],
+                    old.pathCounts[i][y], old.dependencies[i][y], x2y, sigmaXY);
+        }
+        return change;
+    }
+
+    /**
+     * Wraps the entries of a B matrix computed earlier.
+     *
+     * @param n      Number of vertices
+     * @param values Row-major entries, not copied
+     */
+    public static PathBetweennessMatrix wrap(int n, double[] values) {
+        if (values.length != (long) n * n)
+            throw new IllegalArgumentException("B matrix of " + n + " vertices needs " + ((long) n * n) + " entries");
+        return new PathBetweennessMatrix(n, values);
+    }
+
+    public int size() {
+        return n;
+    }
+
+    /**
+     * Copy of the rows of some sources of the all-pairs statistics, taken before they are recomputed.
+     */
+    public static class Rows {
+        final int[] sources;
+        final double[][] distances;
+        final double[][] pathCounts;
+        final double[][] dependencies;
+
+        /**
+         * @param store   Dense all-pairs statistics
+         * @param sources Dense indices of the sources
+         */
+        public Rows(PathCountStore store, int[] sources) {
+            int n = store.size();
+            this.sources = sources.clone();
+            distances = new double[sources.length][n];
+            pathCounts = new double[sources.length][n];
+            dependencies = new double[sources.length][n];
+            for (int i = 0; i < sources.length; i++) {
+                for (int t = 0; t < n; t++) {
+                    distances[i][t] = store.getDistance(sources[i], t);
+                    pathCounts[i][t] = store.getPathCount(sources[i], t);
+                    dependencies[i][t] = store.getPartialDependency(sources[i], t);
+                }
+            }
+        }
+
+        /**
+         * @return True if the row of the vertex was copied
+         */
+        public boolean contains(int source) {
+            for (int s : sources) {
+                if (s == source) return true;
+            }
+            return false;
+        }
+    }
+
+    public double get(int x, int y) {
+        return values[x * n + y];
+    }
+}
@@ -0,0 +1,445 @@
+package edu.usc.hive.scoring;
+
+import edu.uci.ics.jung.graph.UndirectedGraph;
+import edu.usc.hive.shortestpath.CsrGraph;
+import edu.usc.hive.shortestpath.CsrShortestPathCount;
+import edu.usc.hive.shortestpath.DijkstraShortestPathCount;
+import edu.usc.hive.shortestpath.PathCountOptions;
+import edu.usc.hive.shortestpath.VertexIndex;
+import edu.usc.hive.util.Metrics;
+import edu.usc.hive.util.Parallel;
+import org.apache.commons.collections15.Transformer;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+/**
+ * Group betweenness estimated from the shortest paths of randomly sampled vertex pairs, for graphs whose
+ * <code>n x n</code> all-pairs statistics (see {@link SuccessiveGroupBetweenness}) don't fit into memory.
+ * <p/>
+ * The betweenness of a group is the sum over the vertex pairs of the fraction of their shortest paths that pass
+ * through the group - through an inner vertex only if the periphery is excluded, in which case the pairs with an end
+ * in the group don't count. A sample is a uniformly drawn ordered pair <code>(s, t)</code> with one of its shortest
+ * paths drawn uniformly as well: a single-source pass from <code>s</code> (see {@link CsrShortestPathCount.SourcePass})
+ * counts the paths, and the path is walked back from <code>t</code>, stepping to a predecessor <code>u</code> of
+ * <code>v</code> with the probability <code>sigma(s, u) / sigma(s, v)</code>. The fraction of the samples whose path
+ * passes through a group is then an unbiased estimate of its betweenness divided by the number of pairs
+ * <code>n(n - 1) / 2</code> (Riondato and Kornaropoulos 2016; Mahmoody et al. 2016).
+ * <p/>
+ * The fractions are Bernoulli means, so with at most <code>n^x</code> groups of up to <code>x</code> members a union
+ * bound turns a deviation bound of a single fraction into one of all groups at once. The sampling stops adaptively:
+ * the number of samples is doubled up to the count for which Hoeffding's inequality guarantees an error of
+ * <code>epsilon</code>, and after every round the empirical Bernstein bound (Maurer and Pontil 2009) is evaluated
+ * with the largest sample variance any group can have, which is small while all groups cover few paths. The sampling
+ * stops once the bound is below <code>epsilon</code>; the confidence <code>delta</code> is split evenly between the
+ * rounds. See {@link #getErrorBound()}.
+ * <p/>
+ * A sample costs one single-source pass, i.e. <code>O(m log n)</code> or <code>O(m)</code> with uniform or small
+ * integral weights, and pairs in different components cost nothing. Besides the graph, the scorer keeps only the
+ * sampled paths, inverted into the samples each vertex covers (and ends, if the periphery is excluded). A group is
+ * scored like with {@link GroupState}: a {@link SampledGroupState} counts the members covering each sample, so adding
+ * or removing a member costs the length of its list, and consecutive groups of an exhaustive search share all but
+ * their last members. {@link #getExactScores(List)} rescores a few groups exactly, one single-source pass per source,
+ * in <code>O(n + m)</code> memory per thread.
+ * <p/>
+ * Scoring is thread-safe. Like the exact scorer, groups spanning several connected components are rejected.
+ */
+public class SampledGroupBetweenness<V, E> implements IndexedGroupScorer<V> {
+
+    private static final Metrics.Timer SAMPLING_TIMER = Metrics.get().timer(Metrics.SAMPLING);
+    private static final Metrics.Counter SAMPLED_PAIRS = Metrics.get().counter(Metrics.SAMPLED_PAIRS);
+
+    private final VertexIndex<V> index;
+    private final CsrGraph graph;
+    private final CsrShortestPathCount engine;
+    final boolean includePeriphery;
+    private final int parallelism;
+    final int[] components;                 // connected component of every vertex
+    final double pairs;                     // number of unordered vertex pairs
+    int sampleCount;
+    private double epsilon;                 // error bound reached, a fraction of the pairs
+    int[] coverOffsets;                     // samples covered by v: covered[coverOffsets[v]..coverOffsets[v+1])
+    int[] covered;
+    int[] endOffsets;                       // samples ending in v: ends[endOffsets[v]..endOffsets[v+1]), if the
+    int[] ends;                             // periphery is excluded and v is not their only cover
+    private final ThreadLocal<SampledGroupState> states = new ThreadLocal<SampledGroupState>() {
+        @Override
+        protected SampledGroupState initialValue() {
+            return newGroupState(1);
+        }
+    };
+
+    /**
+     * Samples the shortest paths of the graph.
+     *
+     * @param graph            Graph on which the score will be computed - may be disconnected.
+     * @param weight           Mapping <code>E</code>-><code>R</code> representing edges's weights
+     * @param includePeriphery True if paths starting or ending in a group should be included, false otherwise
+     * @param options          Parallelism of the sampling and quantization of the weights; the storage is ignored
+     * @param sampling         Error, confidence, largest group size and seed of the sampling
+     */
+    public SampledGroupBetweenness(UndirectedGraph<V, E> graph, Transformer<E, Double> weight, boolean includePeriphery,
+                                   PathCountOptions options, SamplingOptions sampling) {
+        this.index = new VertexIndex<V>(graph.getVertices());
+        this.graph = CsrGraph.create(graph, DijkstraShortestPathCount.quantize(weight, options.getWeightResolution()),
+                index);
+        this.engine = new CsrShortestPathCount(this.graph);
+        this.includePeriphery = includePeriphery;
+        this.parallelism = options.getParallelism();
+        this.components = labelComponents(this.graph);
+        this.pairs = index.size() * (index.size() - 1d) / 2;
+        long start = System.nanoTime();
+        sample(sampling);
+        SAMPLING_TIMER.recordSince(start);
+    }
+
+    public VertexIndex<V> getVertexIndex() {
+        return index;
+    }
+
+    /**
+     * @return Number of sampled vertex pairs
+     */
+    public int getSampleCount() {
+        return sampleCount;
+    }
+
+    /**
+     * @return Largest difference between the estimated and the exact betweenness of any group of up to
+     * {@link SamplingOptions#getGroupSize()} members, which holds with a probability of at least
+     * <code>1 - delta</code>
+     */
+    public double getErrorBound() {
+        return epsilon * pairs;
+    }
+
+    /**
+     * @return Connected component of the vertex, the same number for the vertices of the same component
+     */
+    public int getComponent(V v) {
+        return components[index.indexOf(v)];
+    }
+
+    /**
+     * Estimates the betweenness of the group.
+     *
+     * @param group Set of vertices defining the group
+     * @return Estimated betweenness of the group
+     */
+    public Double getVertexGroupScore(Set<V> group) {
+        int[] members = new int[group.size()];
+        int k = 0;
+        for (V v : group) {
+            members[k++] = index.indexOf(v);
+        }
+        return getVertexGroupScore(members, k);
+    }
+
+    /**
+     * Estimates the betweenness of the group given by dense vertex indices (see {@link #getVertexIndex()}) from the
+     * number of samples whose path the members cover.
+     */
+    public double getVertexGroupScore(int[] group, int size) {
+        SampledGroupState state = states.get();
+        try {
+            for (int i = 0; i < size; i++) {
+                state.push(group[i]);
+            }
+            return state.getScore();
+        } finally {
+            state.popTo(0);
+        }
+    }
+
+    /**
+     * Creates an empty group to be scored incrementally, e.g. by an exhaustive search that only exchanges the last
+     * members between consecutive groups.
+     *
+     * @param capacity Expected largest size of the group
+     */
+    public SampledGroupState newGroupState(int capacity) {
+        return new SampledGroupState(this, capacity);
+    }
+
+    /**
+     * Computes the exact betweenness of the groups, e.g. of the best ones found on the estimates. Every source of the
+     * components of the groups runs one single-source pass, on which all groups are scored: the number of shortest
+     * paths from the source avoiding a group is counted along the order of settling, like the path counts but without
+     * the paths through members, and a target contributes the fraction of its paths that don't avoid the group.
+     *
+     * @param groups Groups, each within a connected component
+     * @return Betweenness of the groups, in their order
+     * @throws IllegalArgumentException if a group is not connected
+     */
+    public double[] getExactScores(List<Set<V>> groups) {
+        final int n = index.size();
+        final int f = groups.size();
+        final boolean[][] members = new boolean[f][n];
+        final int[] groupComponents = new int[f];
+        for (int g = 0; g < f; g++) {
+            groupComponents[g] = -1;
+            for (V v : groups.get(g)) {
+                int i = index.indexOf(v);
+                if (groupComponents[g] >= 0 && components[i] != groupComponents[g])
+                    throw new IllegalArgumentException("The group is not connected!");
+                groupComponents[g] = components[i];
+                members[g][i] = true;
+            }
+        }
+        final double[] scores = new double[f];
+        Parallel.forEachRange(n, parallelism, new Parallel.RangeTask() {
+            public void run(int from, int to) {
+                CsrShortestPathCount.SourcePass pass = engine.new SourcePass();
+                int[] arcTargets = graph.getTargets();
+                double[] weights = graph.getWeights();
+                int[] predecessorOffsets = new int[n + 1];  // by rank
+                int[] predecessors = new int[graph.getArcCount()];
+                double[] avoiding = new double[n];
+                double[] sums = new double[f];
+                for (int s = from; s < to; s++) {
+                    boolean relevant = false;
+                    for (int g = 0; g < f; g++) {
+                        relevant |= groupComponents[g] == components[s];
+                    }
+                    if (!relevant) continue;
+                    int count = pass.run(s);
+                    int p = 0;
+                    for (int i = 0; i < count; i++) {
+                        int v = pass.getSettled(i);
+                        predecessorOffsets[i] = p;
+                        for (int a = graph.getFirstArc(v), end = graph.getEndArc(v); a < end; a++) {
+                            int u = arcTargets[a];
+                            int rank = pass.getRank(u);
+                            if (rank >= 0 && rank < i && pass.getDistance(u) + weights[a] == pass.getDistance(v)) {
+                                predecessors[p++] = u;
+                            }
+                        }
+                    }
+                    predecessorOffsets[count] = p;
+                    for (int g = 0; g < f; g++) {
+                        if (groupComponents[g] != components[s]) continue;
+                        if (members[g][s]) {
+                            // every path from a member passes through the group, at its start
+                            sums[g] += includePeriphery ? count - 1 : 0;
+                            continue;
+                        }
+                        avoiding[s] = 1;
+                        for (int i = 1; i < count; i++) {
+                            int v = pass.getSettled(i);
+                            if (members[g][v]) {
+                                avoiding[v] = 0;
+                                sums[g] += includePeriphery ? 1 : 0;
+                                continue;
+                            }
+                            double paths = 0;
+                            for (int j = predecessorOffsets[i]; j < predecessorOffsets[i + 1]; j++) {
+                                paths += avoiding[predecessors[j]];
+                            }
+                            avoiding[v] = paths;
+                            sums[g] += 1 - paths / pass.getPathCount(v);
+                        }
+                    }
+                }
+                synchronized (scores) {
+                    for (int g = 0; g < f; g++) {
+                        scores[g] += sums[g];
+                    }
+                }
+            }
+        });
+        for (int g = 0; g < f; g++) {
+            scores[g] /= 2;     // undirected graph
+        }
+        return scores;
+    }
+
+    /**
+     * Draws the samples in rounds of doubling size until the error bound is reached, then inverts the paths into the
+     * samples covered by each vertex. The paths are kept only until then, and their array grows with the rounds.
+     */
+    private void sample(SamplingOptions sampling) {
+        int n = index.size();
+        int x = Math.min(sampling.getGroupSize(), Math.max(1, n));
+        double target = sampling.getEpsilon();
+        // first round about where the Bernstein bound of groups of tiny variance can reach the error
+        int rounds = 1 + Math.max(0, (int) Math.floor(Math.log(3 / (14 * target)) / Math.log(2)));
+        double groupsLog = x * Math.log(Math.max(n, 2));
+        double hoeffdingLog = groupsLog + Math.log(4 * rounds / sampling.getDelta());
+        double bernsteinLog = groupsLog + Math.log(8 * rounds / sampling.getDelta());
+        long maxSamples = Math.max(2, (long) Math.ceil(hoeffdingLog / (2 * target * target)));
+        if (maxSamples > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Epsilon " + target + " needs " + maxSamples + " samples");
+
+        epsilon = 1;
+        if (n < 2) return;
+        // covering vertices of every sample; if the periphery is excluded, preceded by the ends of the pair
+        int[][] paths = new int[0][];
+        long[] hits = new long[n];  // samples covered per vertex
+        long[] endHits = new long[n];
+        long[] top = new long[x];
+        // every sample has its own generator, so the samples don't depend on the number of threads
+        SplittableRandom seeds = new SplittableRandom(sampling.getSeed());
+        int drawn = 0;
+        for (int round = 0; round < rounds; round++) {
+            int samples = (int) Math.max(2, Math.ceil(maxSamples / Math.pow(2, rounds - 1 - round)));
+            samples = (int) Math.min(samples, maxSamples);
+            final int first = drawn;
+            final long[] sampleSeeds = new long[samples - drawn];
+            for (int i = 0; i < sampleSeeds.length; i++) {
+                sampleSeeds[i] = seeds.nextLong();
+            }
+            final int[][] roundPaths = paths = Arrays.copyOf(paths, samples);
+            Parallel.forEachRange(samples - drawn, parallelism, new Parallel.RangeTask() {
+                public void run(int from, int to) {
+                    CsrShortestPathCount.SourcePass pass = engine.new SourcePass();
+                    int[] path = new int[index.size()];
+                    for (int i = from; i < to; i++) {
+                        SplittableRandom random = new SplittableRandom(sampleSeeds[i]);
+                        int s = random.nextInt(index.size());
+                        int t = random.nextInt(index.size() - 1);
+                        if (t >= s) t++;
+                        int length = components[s] == components[t] ? drawPath(pass, s, t, random, path) : 0;
+                        int[] sample = includePeriphery || length == 0 ? new int[length] : new int[length + 2];
+                        if (sample.length > length) {
+                            sample[0] = s;
+                            sample[1] = t;
+                        }
+                        System.arraycopy(path, 0, sample, sample.length - length, length);
+                        roundPaths[first + i] = sample;
+                    }
+                }
+            });
+            for (int i = drawn; i < samples; i++) {
+                int endCount = getEndCount(paths[i]);
+                for (int j = 0; j < paths[i].length; j++) {
+                    if (j < endCount) {
+                        endHits[paths[i][j]]++;
+                    } else {
+                        hits[paths[i][j]]++;
+                    }
+                }
+            }
+            drawn = samples;
+
+            // no group covers more samples than its x best members together
+            Arrays.fill(top, 0);
+            for (long h : hits) {
+                if (h > top[0]) {
+                    top[0] = h;
+                    Arrays.sort(top);
+                }
+            }
+            long bound = 0;
+            for (long h : top) {
+                bound += h;
+            }
+            double p = Math.min(0.5, (double) bound / drawn);
+            double variance = drawn * p * (1 - p) / (drawn - 1);
+            double bernstein = Math.sqrt(2 * variance * bernsteinLog / drawn) + 7 * bernsteinLog / (3 * (drawn - 1));
+            epsilon = Math.min(Math.min(bernstein, Math.sqrt(hoeffdingLog / (2 * drawn))), 1);
+            if (epsilon <= target) break;
+        }
+        SAMPLED_PAIRS.add(drawn);
+
+        sampleCount = drawn;
+        coverOffsets = new int[n + 1];
+        endOffsets = new int[n + 1];
+        for (int v = 0; v < n; v++) {
+            coverOffsets[v + 1] = coverOffsets[v] + (int) hits[v];
+            endOffsets[v + 1] = endOffsets[v] + (int) endHits[v];
+        }
+        covered = new int[coverOffsets[n]];
+        ends = new int[endOffsets[n]];
+        int[] nextCover = Arrays.copyOf(coverOffsets, n);
+        int[] nextEnd = Arrays.copyOf(endOffsets, n);
+        for (int i = 0; i < drawn; i++) {
+            int endCount = getEndCount(paths[i]);
+            for (int j = 0; j < paths[i].length; j++) {
+                int v = paths[i][j];
+                if (j < endCount) {
+                    ends[nextEnd[v]++] = i;
+                } else {
+                    covered[nextCover[v]++] = i;
+                }
+            }
+            paths[i] = null;
+        }
+    }
+
+    /**
+     * @return Number of ends of the pair at the start of a sampled path: two if the periphery is excluded and the path
+     * has inner vertices, else none - a sample without inner vertices counts for no group
+     */
+    private int getEndCount(int[] path) {
+        return includePeriphery ? 0 : Math.min(2, path.length);
+    }
+
+    /**
+     * Draws one of the shortest paths from <code>s</code> to <code>t</code> uniformly at random.
+     *
+     * @param path Receives the vertices covering the path - the inner ones, and the ends if the periphery is included
+     * @return Number of vertices written to the path
+     */
+    private int drawPath(CsrShortestPathCount.SourcePass pass, int s, int t, SplittableRandom random, int[] path) {
+        pass.run(s);
+        if (pass.getRank(t) < 0) return 0;      // behind an edge of infinite weight
+        int[] arcTargets = graph.getTargets();
+        double[] weights = graph.getWeights();
+        int length = 0;
+        if (includePeriphery) {
+            path[length++] = t;
+        }
+        int v = t;
+        while (true) {
+            double remaining = random.nextDouble() * pass.getPathCount(v);
+            int rank = pass.getRank(v);
+            int predecessor = -1;
+            for (int a = graph.getFirstArc(v), end = graph.getEndArc(v); a < end; a++) {
+                int u = arcTargets[a];
+                int uRank = pass.getRank(u);
+                if (uRank >= 0 && uRank < rank && pass.getDistance(u) + weights[a] == pass.getDistance(v)) {
+                    predecessor = u;
+                    remaining -= pass.getPathCount(u);
+                    if (remaining < 0) break;
+                }
+            }
+            if (predecessor == s) break;
+            path[length++] = predecessor;
+            v = predecessor;
+        }
+        if (includePeriphery) {
+            path[length++] = s;
+        }
+        return length;
+    }
+
+    /**
+     * @return Component label of every vertex, by breadth-first search
+     */
+    private static int[] labelComponents(CsrGraph graph) {
+        int[] labels = new int[graph.size()];
+        Arrays.fill(labels, -1);
+        int[] queue = new int[graph.size()];
+        int[] arcTargets = graph.getTargets();
+        int component = 0;
+        for (int start = 0; start < graph.size(); start++) {
+            if (labels[start] >= 0) continue;
+            labels[start] = component;
+            int head = 0, tail = 0;
+            queue[tail++] = start;
+            while (head < tail) {
+                int v = queue[head++];
+                for (int a = graph.getFirstArc(v), end = graph.getEndArc(v); a < end; a++) {
+                    if (labels[arcTargets[a]] < 0) {
+                        labels[arcTargets[a]] = component;
+                        queue[tail++] = arcTargets[a];
+                    }
+                }
+            }
+            component++;
+        }
+        return labels;
+    }
+}
@@ -0,0 +1,94 @@
+package edu.usc.hive.scoring;
+
+import java.util.Arrays;
+
+/**
+ * A group that is built incrementally and scored on the samples of a {@link SampledGroupBetweenness}. The state counts
+ * per sample how many members cover its path and, if the periphery is excluded, how many members are its ends, and
+ * keeps the number of samples that are covered and have no end in the group. Pushing or popping a member therefore
+ * reads only the samples of that member, not those of the whole group.
+ * <p/>
+ * Members are given by dense vertex indices. A state must not be shared between threads.
+ */
+public class SampledGroupState implements IncrementalGroup {
+
+    private final SampledGroupBetweenness<?, ?> scorer;
+    private final int[] coverCounts;    // members covering the path, per sample
+    private final int[] endCounts;      // members at the ends of the path, per sample; null with the periphery
+    private int[] members;
+    private int size;
+    private int hits;                   // samples counted for the group
+
+    SampledGroupState(SampledGroupBetweenness<?, ?> scorer, int capacity) {
+        this.scorer = scorer;
+        this.coverCounts = new int[scorer.sampleCount];
+        this.endCounts = scorer.includePeriphery ? null : new int[scorer.sampleCount];
+        this.members = new int[Math.max(1, capacity)];
+    }
+
+    public void push(int u) {
+        if (size > 0 && scorer.components[u] != scorer.components[members[0]])
+            throw new IllegalArgumentException("The group is not connected!");
+        if (size == members.length) {
+            members = Arrays.copyOf(members, 2 * size);
+        }
+        members[size++] = u;
+        int[] covered = scorer.covered;
+        for (int j = scorer.coverOffsets[u], end = scorer.coverOffsets[u + 1]; j < end; j++) {
+            int sample = covered[j];
+            if (coverCounts[sample]++ == 0 && (endCounts == null || endCounts[sample] == 0)) {
+                hits++;
+            }
+        }
+        if (endCounts != null) {
+            int[] ends = scorer.ends;
+            for (int j = scorer.endOffsets[u], end = scorer.endOffsets[u + 1]; j < end; j++) {
+                int sample = ends[j];
+                if (endCounts[sample]++ == 0 && coverCounts[sample] > 0) {
+                    hits--;     // a pair with an end in the group
+                }
+            }
+        }
+    }
+
+    public void pop() {
+        if (size == 0)
+            throw new IllegalStateException("The group is empty");
+        int u = members[--size];
+        if (endCounts != null) {
+            int[] ends = scorer.ends;
+            for (int j = scorer.endOffsets[u], end = scorer.endOffsets[u + 1]; j < end; j++) {
+                int sample = ends[j];
+                if (--endCounts[sample] == 0 && coverCounts[sample] > 0) {
+                    hits++;
+                }
+            }
+        }
+        int[] covered = scorer.covered;
+        for (int j = scorer.coverOffsets[u], end = scorer.coverOffsets[u + 1]; j < end; j++) {
+            int sample = covered[j];
+            if (--coverCounts[sample] == 0 && (endCounts == null || endCounts[sample] == 0)) {
+                hits--;
+            }
+        }
+    }
+
+    public void popTo(int newSize) {
+        if (newSize < 0 || newSize > size)
+            throw new IllegalArgumentException("Cannot shrink a group of " + size + " to " + newSize);
+        while (size > newSize) {
+            pop();
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return Estimated betweenness of the group
+     */
+    public double getScore() {
+        return scorer.sampleCount == 0 ? 0 : scorer.pairs * hits / scorer.sampleCount;
+    }
+}
@@ -0,0 +1,68 @@
+package edu.usc.hive.scoring;
+
+/**
+ * Settings of the sampling in {@link SampledGroupBetweenness}: the scores of all groups of up to
+ * {@link #getGroupSize()} members are within <code>epsilon</code> times the number of vertex pairs of their exact
+ * values with a probability of at least <code>1 - delta</code>.
+ */
+public class SamplingOptions {
+
+    private double epsilon = 0.01;
+    private double delta = 0.1;
+    private int groupSize = 1;
+    private long seed = 0;
+
+    /**
+     * @return Largest error of the scores as a fraction of the number of vertex pairs
+     */
+    public double getEpsilon() {
+        return epsilon;
+    }
+
+    public SamplingOptions setEpsilon(double epsilon) {
+        if (!(epsilon > 0 && epsilon < 1))
+            throw new IllegalArgumentException("Epsilon must be in (0, 1)");
+        this.epsilon = epsilon;
+        return this;
+    }
+
+    /**
+     * @return Probability that a score is off by more than the error
+     */
+    public double getDelta() {
+        return delta;
+    }
+
+    public SamplingOptions setDelta(double delta) {
+        if (!(delta > 0 && delta < 1))
+            throw new IllegalArgumentException("Delta must be in (0, 1)");
+        this.delta = delta;
+        return this;
+    }
+
+    /**
+     * @return Largest size of the groups the guarantee covers - the number of samples grows with it
+     */
+    public int getGroupSize() {
+        return groupSize;
+    }
+
+    public SamplingOptions setGroupSize(int groupSize) {
+        if (groupSize < 1)
+            throw new IllegalArgumentException("Group size must be positive");
+        this.groupSize = groupSize;
+        return this;
+    }
+
+    /**
+     * @return Seed of the random samples - the same seed gives the same samples and scores
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    public SamplingOptions setSeed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+}
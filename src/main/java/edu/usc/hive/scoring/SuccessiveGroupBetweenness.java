@@ -4,10 +4,19 @@ import edu.uci.ics.jung.graph.Graph;
 import edu.uci.ics.jung.graph.UndirectedGraph;
 import org.apache.commons.collections15.Transformer;
 import edu.usc.hive.shortestpath.DijkstraShortestPathCount;
+import edu.usc.hive.shortestpath.EdgeUpdate;
+import edu.usc.hive.shortestpath.PathCountOptions;
+import edu.usc.hive.shortestpath.PathCountStore;
+import edu.usc.hive.shortestpath.VertexIndex;
+import edu.usc.hive.util.Metrics;
 
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Created by IntelliJ IDEA.
@@ -30,20 +39,39 @@ import java.util.Set;
  * in the paper, this implementation works also with disconnected graphs - it then treats each connected component as a
  * separate graph. However, each group has to be connected, so if it is not, an exception is thrown.
  * <p/>
+ * Scoring is thread-safe: the all-pairs statistics are read-only after construction and the lazily filled B matrix
+ * cache is a concurrent map, so a single instance can be shared by several scoring threads. The B matrix can also be
+ * computed eagerly (see {@link #precomputePathBetweenness(int)}), so scoring only reads immutable arrays.
+ * <p/>
+ * Changes of the edges are applied by {@link #update(Collection, int)}, which recomputes the statistics of the affected
+ * sources only and corrects the B matrix and its cache accordingly. Updates must not run concurrently with scoring.
+ * <p/>
  * Note that shortest paths are determined by weights, which usually characterize importance, so you might want to
  * actually rather consider their complements, i.e. <code>(1-w)</code>.
  * <p/>
  * <b>Acknowledgments:</b>This work was supported by Science Foundation Ireland (SFI) projects
  * Grant No. SFI/08/CE/I1380 (Lion-2) and Grant No. 08/SRC/I1407 (Clique: Graph & Network Analysis Cluster).
  */
-public class SuccessiveGroupBetweenness<V, E> implements VertexGroupScorer<V, Double> {
+public class SuccessiveGroupBetweenness<V, E> implements IndexedGroupScorer<V> {
+
+    private static final Metrics.Counter CACHE_HITS = Metrics.get().counter(Metrics.B_CACHE_HITS);
+    private static final Metrics.Counter CACHE_MISSES = Metrics.get().counter(Metrics.B_CACHE_MISSES);
 
     protected Graph<V, E> graph;
     protected DijkstraShortestPathCount<V, E> distance;
     protected Transformer<E, Double> weight;
-    protected Map<V, Map<V, Double>> pathBetweenness;   // B matrix according to Puzis et al. (2007)
+    protected ConcurrentMap<V, ConcurrentMap<V, Double>> pathBetweenness;   // B matrix according to Puzis et al. (2007)
     protected boolean includePeriphery;
     protected boolean isConnected;
+    protected VertexIndex<V> index;     // dense storage only
+    protected PathCountStore store;     // dense storage only
+    protected volatile PathBetweennessMatrix pathBetweennessMatrix;   // complete B matrix, if precomputed
+    private final ThreadLocal<GroupScoreContext> contexts = new ThreadLocal<GroupScoreContext>() {
+        @Override
+        protected GroupScoreContext initialValue() {
+            return new GroupScoreContext(4);
+        }
+    };
 
     /**
      * Creates a group betweenness scorer for a weighted undirected graph
@@ -53,12 +81,54 @@ public class SuccessiveGroupBetweenness<V, E> implements VertexGroupScorer<V, Do
      * @param includePeriphery True if paths starting or ending in a group should be included, false otherwise
      */
     public SuccessiveGroupBetweenness(UndirectedGraph<V, E> graph, Transformer<E, Double> weight, boolean includePeriphery) {
+        this(graph, weight, includePeriphery, new PathCountOptions());
+    }
+
+    /**
+     * Creates a group betweenness scorer for a weighted undirected graph
+     *
+     * @param graph            Graph on which the score will be computed - may be disconnected.
+     * @param weight           Mapping <code>E</code>-><code>R</code> representing edges's weights
+     * @param includePeriphery True if paths starting or ending in a group should be included, false otherwise
+     * @param options          Settings of the all-pairs shortest path counting
+     */
+    public SuccessiveGroupBetweenness(UndirectedGraph<V, E> graph, Transformer<E, Double> weight, boolean includePeriphery,
+                                      PathCountOptions options) {
+        this(graph, weight, includePeriphery, new DijkstraShortestPathCount<V, E>(graph, weight, true, options));
+    }
+
+    /**
+     * Creates a group betweenness scorer on shortest path counts computed earlier
+     *
+     * @param graph            Graph on which the score will be computed - may be disconnected.
+     * @param weight           Mapping <code>E</code>-><code>R</code> representing edges's weights
+     * @param includePeriphery True if paths starting or ending in a group should be included, false otherwise
+     * @param distance         All-pairs shortest path counts of the graph
+     */
+    public SuccessiveGroupBetweenness(UndirectedGraph<V, E> graph, Transformer<E, Double> weight, boolean includePeriphery,
+                                      DijkstraShortestPathCount<V, E> distance) {
         this.graph = graph;
         this.weight = weight;
-        this.distance = new DijkstraShortestPathCount<V, E>(graph, weight, true);
-        this.pathBetweenness = new HashMap<V, Map<V, Double>>();
+        this.distance = distance;
+        this.pathBetweenness = new ConcurrentHashMap<V, ConcurrentMap<V, Double>>();
         this.includePeriphery = includePeriphery;
         this.isConnected = distance.isConnected();
+        this.index = distance.getVertexIndex();
+        this.store = distance.getStore();
+    }
+
+    /**
+     * @return Dense indices of the vertices, or null if the path counts are kept in maps
+     */
+    public VertexIndex<V> getVertexIndex() {
+        return index;
+    }
+
+    /**
+     * @return Dense all-pairs statistics, or null if the path counts are kept in maps
+     */
+    public PathCountStore getStore() {
+        return store;
     }
 
     /**
@@ -70,31 +140,137 @@ public class SuccessiveGroupBetweenness<V, E> implements VertexGroupScorer<V, Do
      * @return Betweenness of the paths starting at any vertex <code>s</code> and then going first through <code>x</code> and then <code>y</code>
      */
     protected double getPathBetweenness(V x, V y) {
-        if (pathBetweenness.containsKey(x)) {
-            if (pathBetweenness.get(x).containsKey(y)) {
-                return pathBetweenness.get(x).get(y);
-            }
-        } else {
-            pathBetweenness.put(x, new HashMap<V, Double>());
+        if (pathBetweennessMatrix != null) {
+            return pathBetweennessMatrix.get(index.indexOf(x), index.indexOf(y));
+        }
+        ConcurrentMap<V, Double> row = pathBetweenness.get(x);
+        if (row == null) {
+            ConcurrentMap<V, Double> created = new ConcurrentHashMap<V, Double>();
+            row = pathBetweenness.putIfAbsent(x, created);
+            if (row == null) row = created;
+        }
+        Double cached = row.get(y);
+        if (cached != null) {
+            CACHE_HITS.increment();
+            return cached;
+        }
+        CACHE_MISSES.increment();
+
+        if (store != null) {
+            double pathBetXY = PathBetweennessMatrix.compute(store, index.indexOf(x), index.indexOf(y));
+            row.put(y, pathBetXY);
+            return pathBetXY;
         }
 
         double pathBetXY = 0;
         for (V s : graph.getVertices()) {
 
             double deltaSY = distance.getPartialDependency(s, y);
-            long sigmaSXY = distance.getShortestPathCount(s, x, y);
-            long sigmaSY = distance.getShortestPathCount(s, y);
+            double sigmaSXY = distance.getShortestPathCount(s, x, y);
+            double sigmaSY = distance.getShortestPathCount(s, y);
 
             if (deltaSY != 0 && sigmaSXY != 0 && sigmaSY != 0) {  // add only non-zero contributions
-                pathBetXY += deltaSY * (((double) sigmaSXY) / sigmaSY);
+                pathBetXY += deltaSY * (sigmaSXY / sigmaSY);
             }
         }
 
-        pathBetweenness.get(x).put(y, pathBetXY);
+        row.put(y, pathBetXY);  // concurrent misses compute the same value, so a lost race is harmless
 
         return pathBetXY;
     }
 
+    /**
+     * Compute path betweenness of edge XY given by dense vertex indices (see {@link #getPathBetweenness(Object, Object)})
+     */
+    protected double getPathBetweenness(int x, int y) {
+        if (pathBetweennessMatrix != null) {
+            return pathBetweennessMatrix.get(x, y);
+        }
+        return getPathBetweenness(index.get(x), index.get(y));
+    }
+
+    /**
+     * Computes the complete B matrix up front instead of filling the cache pair by pair, so that scoring never
+     * computes a path betweenness and never writes to shared state. Needs dense storage of the path counts and
+     * <code>O(n^2)</code> additional memory.
+     *
+     * @param parallelism Number of threads computing the matrix
+     */
+    public void precomputePathBetweenness(int parallelism) {
+        if (store == null)
+            throw new IllegalStateException("Precomputed B matrix requires dense storage of the path counts");
+        long start = System.nanoTime();
+        pathBetweennessMatrix = PathBetweennessMatrix.build(store, parallelism);
+        pathBetweenness.clear();
+        Metrics.get().timer(Metrics.B_MATRIX).recordSince(start);
+    }
+
+    /**
+     * Uses a complete B matrix computed earlier (see {@link #precomputePathBetweenness(int)}).
+     *
+     * @throws IllegalArgumentException if the matrix doesn't match the dense storage of the path counts
+     */
+    public void setPathBetweennessMatrix(PathBetweennessMatrix matrix) {
+        if (store == null || matrix.size() != store.size())
+            throw new IllegalArgumentException("B matrix of " + matrix.size() + " vertices doesn't match the path counts");
+        pathBetweennessMatrix = matrix;
+        pathBetweenness.clear();
+    }
+
+    /**
+     * Brings the scorer up to date after edges of the graph were inserted, deleted or reweighted (see
+     * {@link DijkstraShortestPathCount#update(Collection, int)}). With dense storage, the rows of the B matrix and of
+     * its cache of the recomputed sources are recomputed and the other entries are corrected (see
+     * {@link PathBetweennessMatrix#update(PathCountStore, PathBetweennessMatrix.Rows, int)}); with map storage the
+     * cache is dropped.
+     *
+     * @param updates     Changes of the edges, already applied to the graph and the weights
+     * @param parallelism Number of threads
+     * @return The sources whose statistics were recomputed
+     */
+    public List<V> update(Collection<EdgeUpdate<V>> updates, int parallelism) {
+        List<V> affected = distance.getAffectedSources(updates);
+        if (affected.isEmpty()) {
+            return affected;
+        }
+        if (store == null) {
+            distance.recomputeSources(affected, parallelism);
+            pathBetweenness.clear();
+            isConnected = distance.isConnected();
+            return affected;
+        }
+        int[] sources = new int[affected.size()];
+        for (int i = 0; i < sources.length; i++) {
+            sources[i] = index.indexOf(affected.get(i));
+        }
+        PathBetweennessMatrix.Rows old = new PathBetweennessMatrix.Rows(store, sources);
+        distance.recomputeSources(affected, parallelism);
+        isConnected = distance.isConnected();
+
+        if (pathBetweennessMatrix != null) {
+            pathBetweennessMatrix = pathBetweennessMatrix.update(store, old, parallelism);
+        }
+        for (Map.Entry<V, ConcurrentMap<V, Double>> row : pathBetweenness.entrySet()) {
+            int x = index.indexOf(row.getKey());
+            if (old.contains(x)) {
+                row.getValue().clear();
+                continue;
+            }
+            for (Map.Entry<V, Double> entry : row.getValue().entrySet()) {
+                entry.setValue(entry.getValue()
+                        + PathBetweennessMatrix.getChange(store, old, x, index.indexOf(entry.getKey())));
+            }
+        }
+        return affected;
+    }
+
+    /**
+     * @return The complete B matrix, or null if it is not precomputed
+     */
+    public PathBetweennessMatrix getPathBetweennessMatrix() {
+        return pathBetweennessMatrix;
+    }
+
     /**
      * Computes the betweenness of the group.
      *
@@ -102,6 +278,159 @@ public class SuccessiveGroupBetweenness<V, E> implements VertexGroupScorer<V, Do
      * @return Betweenness of the group
      */
     public Double getVertexGroupScore(Set<V> group) {
+        if (store == null) {
+            return getVertexGroupScoreFromMaps(group);
+        }
+        GroupScoreContext context = contexts.get();
+        context.ensureCapacity(group.size());
+        int k = 0;
+        for (V v : group) {
+            context.members[k++] = index.indexOf(v);
+        }
+        return getVertexGroupScore(context.members, k, context);
+    }
+
+    /**
+     * Computes the betweenness of the group given by dense vertex indices on the scratch space of the calling thread
+     * (see {@link #getVertexGroupScore(int[], int, GroupScoreContext)}).
+     */
+    public double getVertexGroupScore(int[] group, int size) {
+        return getVertexGroupScore(group, size, contexts.get());
+    }
+
+    /**
+     * @return A new scratch space for {@link #getVertexGroupScore(int[], int, GroupScoreContext)}
+     */
+    public GroupScoreContext newContext(int capacity) {
+        return new GroupScoreContext(capacity);
+    }
+
+    /**
+     * Computes the betweenness of the group given by dense vertex indices (see {@link #getVertexIndex()}). Works
+     * only with dense storage of the all-pairs statistics and allocates nothing: the <code>k x k</code> matrices are
+     * loaded once into the context and then updated in place for every member, alternating between two buffers.
+     * Members are processed in the order given, which yields the same score as the set based variant iterating in
+     * that order.
+     *
+     * @param group   Indices of the group members - <code>group[0..size-1]</code> is read
+     * @param size    Number of members
+     * @param context Scratch space owned by the calling thread
+     * @return Betweenness of the group
+     */
+    public double getVertexGroupScore(int[] group, int size, GroupScoreContext context) {
+        if (store == null)
+            throw new IllegalStateException("Primitive scoring requires dense storage of the path counts");
+        context.ensureCapacity(size);
+        int k = size;
+        double[] dist = context.distances;
+        for (int x = 0; x < k; x++) {
+            for (int y = 0; y < k; y++) {
+                int xy = x * k + y;
+                dist[xy] = store.getDistance(group[x], group[y]);
+                if (!isConnected && Double.isInfinite(dist[xy]))
+                    throw new IllegalArgumentException("The group is not connected!");
+                context.sigma[xy] = store.getPathCount(group[x], group[y]);
+                context.pathBetweenness[xy] = getPathBetweenness(group[x], group[y]);
+            }
+        }
+
+        double groupBetweenness = 0; // 'B with colon above'
+
+        for (int v = 0; v < k; v++) {
+            double[] sigmaM = context.sigma;
+            double[] pathBetweennessM = context.pathBetweenness;
+            double[] sigmaMUV = context.sigmaNext;
+            double[] pathBetweennessMUV = context.pathBetweennessNext;
+            groupBetweenness += pathBetweennessM[v * k + v];
+            for (int x = 0; x < k; x++) {
+                for (int y = 0; y < k; y++) {
+                    updatePair(dist, sigmaM, pathBetweennessM, sigmaMUV, pathBetweennessMUV, k, x, y, v);
+                }
+            }
+            context.swap();
+        }
+
+        groupBetweenness /= 2;  // undirected graph
+
+        return groupBetweenness - getPeripheryCorrection(group, size);
+    }
+
+    /**
+     * Updates the 'sigma with ~' and 'B with ~' entries of the pair <code>(x, y)</code> after adding group member
+     * <code>v</code> to M, following Puzis et al. (2007). Matrices are row-major with the given row length and are
+     * indexed by positions in the group.
+     */
+    static void updatePair(double[] dist, double[] sigmaM, double[] pathBetweennessM, double[] sigmaMUV,
+                           double[] pathBetweennessMUV, int stride, int x, int y, int v) {
+        int xy = x * stride + y, xv = x * stride + v, yv = y * stride + v, vx = v * stride + x, vy = v * stride + y;
+        double dXVY = 0, dXYV = 0, dVXY = 0;
+        if (!(sigmaM[xy] == 0 || sigmaM[xv] == 0 || sigmaM[yv] == 0)) {
+            if (dist[xv] == dist[xy] + dist[yv]) {
+                dXYV = sigmaM[xy] * sigmaM[yv] / sigmaM[xv];
+            }
+            if (dist[xy] == dist[xv] + dist[vy]) {
+                dXVY = sigmaM[xv] * sigmaM[vy] / sigmaM[xy];
+            }
+            if (dist[vy] == dist[vx] + dist[xy]) {
+                dVXY = sigmaM[vx] * sigmaM[xy] / sigmaM[vy];
+            }
+        }
+        sigmaMUV[xy] = sigmaM[xy] * (1 - dXVY);
+        double pb = pathBetweennessM[xy] - pathBetweennessM[xy] * dXVY;
+        if (y != v) {
+            pb = pb - pathBetweennessM[xv] * dXYV;
+        }
+        if (x != v) {
+            pb = pb - pathBetweennessM[vy] * dVXY;
+        }
+        pathBetweennessMUV[xy] = pb;
+    }
+
+    /**
+     * @param capacity Largest number of members
+     * @return A new empty group that is scored incrementally (see {@link GroupState})
+     */
+    public GroupState newGroupState(int capacity) {
+        if (store == null)
+            throw new IllegalStateException("Incremental scoring requires dense storage of the path counts");
+        return new GroupState(this, capacity);
+    }
+
+    /**
+     * Computes what is subtracted from the betweenness of a group if paths starting or ending in the group are
+     * excluded. The correction depends only on the size of the group and of its connected component.
+     *
+     * @param group Indices of the group members - <code>group[0..size-1]</code> is read
+     * @param size  Number of members
+     * @return Correction of the group betweenness, 0 if the periphery is included
+     */
+    public double getPeripheryCorrection(int[] group, int size) {
+        if (includePeriphery) {
+            return 0;
+        }
+        int componentSize = 0;
+        for (int i = 0; i < size; i++) {
+            componentSize = Math.max(componentSize, store.getAccessibleVerticesCount(group[i]));
+        }
+        return getPeripheryCorrection(size, componentSize);
+    }
+
+    /**
+     * @param size          Size of a group
+     * @param componentSize Size of the connected component of the group
+     * @return Correction of the group betweenness, 0 if the periphery is included
+     */
+    public double getPeripheryCorrection(int size, int componentSize) {
+        if (includePeriphery) {
+            return 0;
+        }
+        return size * (2 * componentSize - size - 1) / 2d;
+    }
+
+    /**
+     * Computes the betweenness of the group on the per-source maps of the all-pairs statistics.
+     */
+    private Double getVertexGroupScoreFromMaps(Set<V> group) {
         if (!isConnected && !isGroupConnected(group))
             throw new IllegalArgumentException("The group is not connected!");
 
@@ -111,7 +440,7 @@ public class SuccessiveGroupBetweenness<V, E> implements VertexGroupScorer<V, Do
             sigmaM.put(x, new HashMap<V, Double>());
             pathBetweennessM.put(x, new HashMap<V, Double>());
             for (V y : group) {
-                sigmaM.get(x).put(y, (double) distance.getShortestPathCount(x, y));
+                sigmaM.get(x).put(y, distance.getShortestPathCount(x, y));
                 pathBetweennessM.get(x).put(y, getPathBetweenness(x, y));
             }
         }
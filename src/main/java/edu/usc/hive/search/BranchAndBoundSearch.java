@@ -0,0 +1,158 @@
+package edu.usc.hive.search;
+
+import edu.usc.hive.scoring.GroupState;
+import edu.usc.hive.scoring.SuccessiveGroupBetweenness;
+import edu.usc.hive.shortestpath.PathCountStore;
+import edu.usc.hive.util.Metrics;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Exact search for the group of <code>x</code> candidates with the highest group betweenness by depth-first branch and
+ * bound.
+ * <p/>
+ * Partial groups are extended one member at a time on a {@link GroupState}, so every child reuses the matrices of
+ * its parent. Candidates are ordered by their individual contribution <code>B(v, v) / 2</code>, which bounds their
+ * marginal gain with respect to any group because group betweenness including the periphery is submodular. A branch
+ * whose score plus the best individual contributions of the candidates it may still add, minus the periphery
+ * correction, cannot beat the incumbent is pruned; thanks to the ordering, so are all its right siblings. The
+ * incumbent is seeded by the lazy greedy search. When the best <code>k</code> groups are searched, the incumbent is
+ * the <code>k</code>-th best group found so far, kept in a {@link TopK} heap, and nothing is pruned until
+ * <code>k</code> groups have been found.
+ * <p/>
+ * The reported evaluations are the complete groups scored, comparable to the number of groups of the exhaustive
+ * search; the partial groups the greedy seed scores are not among them.
+ * <p/>
+ * Needs dense storage of the path counts.
+ */
+public class BranchAndBoundSearch<V> {
+
+    private final SuccessiveGroupBetweenness<V, ?> scorer;
+    private final List<V> candidates;
+
+    /**
+     * @param scorer     Scorer of the groups
+     * @param candidates Vertices the group is drawn from
+     */
+    public BranchAndBoundSearch(SuccessiveGroupBetweenness<V, ?> scorer, List<V> candidates) {
+        if (scorer.getStore() == null)
+            throw new IllegalArgumentException("Branch and bound requires dense storage of the path counts");
+        this.scorer = scorer;
+        this.candidates = candidates;
+    }
+
+    /**
+     * Finds the group of <code>x</code> candidates with the highest score.
+     *
+     * @param x Size of the group
+     * @return Best group, its score and the number of complete groups scored
+     */
+    public SearchResult<V> search(int x) {
+        return search(x, 1);
+    }
+
+    /**
+     * Finds the <code>k</code> groups of <code>x</code> candidates with the highest scores. Groups that tie with the
+     * <code>k</code>-th best score may be pruned, so of equal scores the one kept is not necessarily the one the
+     * exhaustive search keeps.
+     *
+     * @param x Size of the group
+     * @param k Number of groups
+     * @return Best groups ordered by their scores and the number of complete groups scored
+     */
+    public SearchResult<V> search(int x, int k) {
+        SearchResult<V> seed = new GreedySearch<V>(scorer, candidates, true).search(x);
+        Run run = new Run(x, new TopK(k));
+        if (seed.getGroup() != null) {
+            int[] indices = new int[x];
+            int i = 0;
+            for (V v : seed.getGroup()) {
+                indices[i++] = run.positions[scorer.getVertexIndex().indexOf(v)];
+            }
+            Arrays.sort(indices);
+            run.best.offer(seed.getScore(), indices);
+        }
+        run.explore(0, 0);
+        Metrics.get().counter(Metrics.GROUPS_SCORED).add(run.evaluations);   // the greedy seed counts its own
+        return ExhaustiveSearch.toResult(run.best, candidates, run.evaluations);
+    }
+
+    /**
+     * State of a single search.
+     */
+    private class Run {
+        final int x;
+        final PathCountStore store = scorer.getStore();
+        final int[] vertices;       // dense indices of the candidates, best individual contribution first
+        final double[] prefix;      // prefix[i] = sum of the individual contributions of vertices[0..i-1]
+        final int[] positions;      // positions[v] = position of the dense vertex v in the candidate list
+        final int[] indices;        // sorted candidate positions of the group on the state
+        final GroupState state;
+        final TopK best;
+        long evaluations;
+
+        Run(int x, TopK best) {
+            this.x = x;
+            this.state = scorer.newGroupState(x);
+            this.best = best;
+            this.indices = new int[x];
+
+            int n = candidates.size();
+            final double[] contribution = new double[n];
+            Integer[] order = new Integer[n];
+            for (int i = 0; i < n; i++) {
+                order[i] = i;
+                state.push(scorer.getVertexIndex().indexOf(candidates.get(i)));
+                contribution[i] = state.getCoverage();
+                state.pop();
+            }
+            Arrays.sort(order, new Comparator<Integer>() {
+                public int compare(Integer a, Integer b) {
+                    int c = Double.compare(contribution[b], contribution[a]);
+                    return c != 0 ? c : a - b;
+                }
+            });
+            vertices = new int[n];
+            prefix = new double[n + 1];
+            positions = new int[store.size()];
+            for (int i = 0; i < n; i++) {
+                vertices[i] = scorer.getVertexIndex().indexOf(candidates.get(order[i]));
+                prefix[i + 1] = prefix[i] + contribution[order[i]];
+                positions[vertices[i]] = order[i];
+            }
+        }
+
+        void explore(int depth, int start) {
+            int remaining = x - depth;
+            for (int p = start; p <= vertices.length - remaining; p++) {
+                int u = vertices[p];
+                int componentSize = store.getAccessibleVerticesCount(u);
+                if (depth == 0 ? componentSize < x : Double.isInfinite(store.getDistance(state.get(0), u))) {
+                    continue;
+                }
+                double bound = state.getCoverage() + (prefix[p + remaining] - prefix[p])
+                        - scorer.getPeripheryCorrection(x, componentSize);
+                if (bound <= best.getThreshold()) {
+                    if (depth == 0) {
+                        continue;   // the correction differs between components
+                    }
+                    break;          // the bounds of the siblings to the right are not larger
+                }
+                state.push(u);
+                if (remaining == 1) {
+                    evaluations++;
+                    for (int i = 0; i < x; i++) {
+                        indices[i] = positions[state.get(i)];
+                    }
+                    Arrays.sort(indices);
+                    best.offer(state.getScore(), indices);
+                } else {
+                    explore(depth + 1, p + 1);
+                }
+                state.pop();
+            }
+        }
+    }
+}
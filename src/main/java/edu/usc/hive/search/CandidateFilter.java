@@ -0,0 +1,136 @@
+package edu.usc.hive.search;
+
+import edu.uci.ics.jung.graph.Graph;
+import edu.usc.hive.scoring.GroupState;
+import edu.usc.hive.scoring.SuccessiveGroupBetweenness;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Shrinks the candidates of a search for the best group before the enumeration: removing a fraction <code>f</code> of
+ * the candidates shrinks the <code>C(n, x)</code> groups by a factor of about <code>(1 - f)^x</code>.
+ * <p/>
+ * A leaf - a vertex with a single neighbour - is removed if its neighbour is a candidate that is not a leaf itself.
+ * The removal can't lose the best score: a leaf is never an inner vertex of a shortest path, and every path from it
+ * starts with its neighbour. Replacing the leaf of a group by its neighbour, or by any other remaining candidate of the
+ * component if the neighbour is a member already, therefore keeps the coverage of every other pair, turns the pairs of
+ * the leaf into pairs covered completely, and trades the pairs of the new member for them - with or without the
+ * periphery. The group stays in its component and keeps its size, hence its periphery correction. Repeating the
+ * exchange turns a best group into one of the remaining candidates with at least the same score, provided at least
+ * <code>x</code> candidates remain in the component; otherwise the leaves of the component are kept.
+ * <p/>
+ * Only the best group is guaranteed to keep its score - groups of lower rank may contain leaves - so the filter is
+ * meant for searches of a single group. Vertices that merely have no betweenness or whose neighbourhood is contained in
+ * another one's are kept: the exchange argument doesn't carry over to them. The remaining candidates are ranked by
+ * their individual contribution <code>B(v, v) / 2</code>, so ties between equally good groups are broken in favour of
+ * the more central members.
+ */
+public class CandidateFilter<V> {
+
+    private final Graph<V, ?> graph;
+
+    /**
+     * @param graph Graph whose vertices are the candidates
+     */
+    public CandidateFilter(Graph<V, ?> graph) {
+        this.graph = graph;
+    }
+
+    /**
+     * @param scorer     Scorer of the component of the candidates, used for the ranking if it has dense storage
+     * @param candidates Candidates, e.g. those of one connected component
+     * @param x          Size of the group
+     * @return Candidates without the dominated leaves of the components in which at least <code>x</code> candidates
+     * remain, in the order of their contributions
+     */
+    public List<V> filter(SuccessiveGroupBetweenness<V, ?> scorer, List<V> candidates, int x) {
+        Set<V> candidateSet = new HashSet<V>(candidates);
+        Map<V, Integer> componentOf = new HashMap<V, Integer>(candidates.size() * 2);
+        List<Integer> remainingIn = new ArrayList<Integer>();   // remaining candidates per component
+        for (V v : candidates) {
+            if (!componentOf.containsKey(v)) {
+                label(v, remainingIn.size(), componentOf);
+                remainingIn.add(0);
+            }
+            if (!isDominatedLeaf(v, candidateSet)) {
+                int c = componentOf.get(v);
+                remainingIn.set(c, remainingIn.get(c) + 1);
+            }
+        }
+        final List<V> remaining = new ArrayList<V>(candidates.size());
+        for (V v : candidates) {
+            // the leaves of a component with too few other candidates are kept
+            if (!isDominatedLeaf(v, candidateSet) || remainingIn.get(componentOf.get(v)) < x) {
+                remaining.add(v);
+            }
+        }
+        if (scorer.getStore() == null) {
+            return remaining;
+        }
+
+        GroupState state = scorer.newGroupState(1);
+        final double[] contribution = new double[remaining.size()];
+        Integer[] order = new Integer[remaining.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+            state.push(scorer.getVertexIndex().indexOf(remaining.get(i)));
+            contribution[i] = state.getCoverage();
+            state.pop();
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                int c = Double.compare(contribution[b], contribution[a]);
+                return c != 0 ? c : a - b;
+            }
+        });
+        List<V> ranked = new ArrayList<V>(order.length);
+        for (int i : order) {
+            ranked.add(remaining.get(i));
+        }
+        return ranked;
+    }
+
+    /**
+     * Filters the candidates of every component before the search (see {@link ComponentSearch}).
+     */
+    public ComponentSearch.Strategy<V> apply(final ComponentSearch.Strategy<V> strategy) {
+        return new ComponentSearch.Strategy<V>() {
+            public SearchResult<V> search(SuccessiveGroupBetweenness<V, ?> scorer, List<V> candidates, int x, int k)
+                    throws InterruptedException {
+                return strategy.search(scorer, filter(scorer, candidates, x), x, k);
+            }
+        };
+    }
+
+    /**
+     * Labels the connected component of the vertex by breadth-first search.
+     */
+    private void label(V start, int component, Map<V, Integer> componentOf) {
+        Deque<V> queue = new ArrayDeque<V>();
+        componentOf.put(start, component);
+        queue.add(start);
+        while (!queue.isEmpty()) {
+            for (V w : graph.getNeighbors(queue.poll())) {
+                if (!componentOf.containsKey(w)) {
+                    componentOf.put(w, component);
+                    queue.add(w);
+                }
+            }
+        }
+    }
+
+    private boolean isDominatedLeaf(V v, Set<V> candidates) {
+        if (graph.getNeighborCount(v) != 1) return false;
+        V neighbour = graph.getNeighbors(v).iterator().next();
+        return candidates.contains(neighbour) && graph.getNeighborCount(neighbour) > 1;
+    }
+}
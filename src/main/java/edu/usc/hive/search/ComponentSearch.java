@@ -0,0 +1,110 @@
+package edu.usc.hive.search;
+
+import edu.usc.hive.scoring.ComponentDecomposition;
+import edu.usc.hive.scoring.SuccessiveGroupBetweenness;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Searches the connected components of a graph (see {@link ComponentDecomposition}) one after another and merges their
+ * best groups. Components with fewer than <code>x</code> candidates are not searched at all, and no group spanning
+ * several components is ever enumerated. Ties are broken by the positions of the members in the list of all
+ * candidates, as within a single search, so the result doesn't depend on the order of the components.
+ */
+public class ComponentSearch<V> {
+
+    /**
+     * Search for the best groups of a single component.
+     */
+    public interface Strategy<V> {
+        /**
+         * @param scorer     Scorer of the component
+         * @param candidates Candidates in the component, in the order of all candidates
+         * @param x          Size of the group
+         * @param k          Number of groups
+         */
+        SearchResult<V> search(SuccessiveGroupBetweenness<V, ?> scorer, List<V> candidates, int x, int k)
+                throws InterruptedException;
+    }
+
+    private final ComponentDecomposition<V, ?> components;
+    private final List<V> candidates;
+    private final Map<V, Integer> positions;
+    private final List<List<V>> componentCandidates;
+
+    /**
+     * @param components Components of the graph
+     * @param candidates Vertices the groups are drawn from
+     */
+    public ComponentSearch(ComponentDecomposition<V, ?> components, List<V> candidates) {
+        this.components = components;
+        this.candidates = candidates;
+        this.positions = new HashMap<V, Integer>(candidates.size() * 2);
+        for (int i = 0; i < candidates.size(); i++) {
+            positions.put(candidates.get(i), i);
+        }
+        this.componentCandidates = new ArrayList<List<V>>(components.size());
+        for (int c = 0; c < components.size(); c++) {
+            Set<V> component = components.getComponent(c);
+            List<V> inComponent = new ArrayList<V>();
+            for (V v : candidates) {
+                if (component.contains(v)) {
+                    inComponent.add(v);
+                }
+            }
+            componentCandidates.add(inComponent);
+        }
+    }
+
+    /**
+     * @return Number of components
+     */
+    public int size() {
+        return components.size();
+    }
+
+    /**
+     * @return Candidates in the component, in the order of all candidates
+     */
+    public List<V> getCandidates(int component) {
+        return componentCandidates.get(component);
+    }
+
+    public SuccessiveGroupBetweenness<V, ?> getScorer(int component) {
+        return components.getScorer(component);
+    }
+
+    /**
+     * Finds the <code>k</code> best groups of <code>x</code> candidates over all components.
+     *
+     * @param x        Size of the group
+     * @param k        Number of groups
+     * @param strategy Search run on every component with at least <code>x</code> candidates
+     * @return Best groups ordered by their scores, with the evaluations of all component searches
+     */
+    public SearchResult<V> search(int x, int k, Strategy<V> strategy) throws InterruptedException {
+        TopK best = new TopK(k);
+        long evaluations = 0;
+        int[] indices = new int[x];
+        for (int c = 0; c < components.size(); c++) {
+            List<V> inComponent = componentCandidates.get(c);
+            if (inComponent.size() < x) continue;
+            SearchResult<V> result = strategy.search(components.getScorer(c), inComponent, x, k);
+            evaluations += result.getEvaluations();
+            for (int i = 0; i < result.getGroups().size(); i++) {
+                int j = 0;
+                for (V v : result.getGroups().get(i)) {
+                    indices[j++] = positions.get(v);
+                }
+                Arrays.sort(indices);
+                best.offer(result.getScore(i), indices);
+            }
+        }
+        return ExhaustiveSearch.toResult(best, candidates, evaluations);
+    }
+}
@@ -0,0 +1,304 @@
+package edu.usc.hive.search;
+
+import edu.usc.hive.Combination;
+import edu.usc.hive.io.SearchCheckpoint;
+import edu.usc.hive.scoring.IncrementalGroup;
+import edu.usc.hive.scoring.IndexedGroupScorer;
+import edu.usc.hive.scoring.SuccessiveGroupBetweenness;
+import edu.usc.hive.scoring.VertexGroupScorer;
+import edu.usc.hive.util.Metrics;
+import edu.usc.hive.util.Parallel;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Scores every group of <code>x</code> candidates and keeps the one with the highest score.
+ * <p/>
+ * With more than one thread, the rank space of the candidate combinations is split into chunks (see
+ * {@link Combination#split(long, int)}) that are scored by a fixed pool of workers. Each chunk has its own cursor and
+ * group buffer and keeps its own best groups in a {@link TopK} heap, the heaps are merged once all chunks are done.
+ * Workers thus share nothing but the scorer, which has to be thread-safe. Ties are broken in favour of the lower rank,
+ * so the result does not depend on the number of threads.
+ * <p/>
+ * With a scorer on dense vertex indices (see {@link IndexedGroupScorer}), e.g. a {@link SuccessiveGroupBetweenness}
+ * on dense storage, a chunk is enumerated depth-first on an {@link IncrementalGroup}: consecutive combinations share a
+ * prefix, which stays on the state, so a group costs only the pushes of its changed suffix - usually a single member -
+ * instead of a full evaluation.
+ * <p/>
+ * A long search can record its progress in a {@link SearchCheckpoint} and resume from it (see
+ * {@link #setCheckpoint(SearchCheckpoint)}).
+ */
+public class ExhaustiveSearch<V> {
+
+    private static final int CHUNKS_PER_THREAD = 16;  // more chunks than threads to even out the load
+    /**
+     * Number of groups of the first round of a search with a checkpoint, a few seconds of scoring on any number of
+     * threads; the later rounds are sized by the speed of the earlier ones
+     */
+    public static final long CHECKPOINT_ROUND_GROUPS = 1 << 22;
+    private static final long MIN_CHECKPOINT_ROUND_GROUPS = 1 << 16;
+
+    private final VertexGroupScorer<V, Double> scorer;
+    private final List<V> candidates;
+    private final int threads;
+    private SearchCheckpoint checkpoint;
+
+    /**
+     * @param scorer     Scorer of the groups - has to be thread-safe if <code>threads > 1</code>
+     * @param candidates Vertices the groups are drawn from
+     * @param threads    Number of scoring threads
+     */
+    public ExhaustiveSearch(VertexGroupScorer<V, Double> scorer, List<V> candidates, int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("Number of threads must be positive");
+        this.scorer = scorer;
+        this.candidates = candidates;
+        this.threads = threads;
+    }
+
+    /**
+     * Finds the group of <code>x</code> candidates with the highest score. Groups the scorer rejects with an
+     * <code>IllegalArgumentException</code> (e.g. disconnected ones) are skipped.
+     *
+     * @param x Size of the group
+     * @return Best group and its score
+     */
+    public SearchResult<V> search(int x) throws InterruptedException {
+        return search(x, 1);
+    }
+
+    /**
+     * Finds the <code>k</code> groups of <code>x</code> candidates with the highest scores. Groups the scorer rejects
+     * with an <code>IllegalArgumentException</code> (e.g. disconnected ones) are skipped.
+     *
+     * @param x Size of the group
+     * @param k Number of groups
+     * @return Best groups ordered by their scores, of equal scores the one earlier in the candidate order first
+     */
+    public SearchResult<V> search(final int x, final int k) throws InterruptedException {
+        long count = Combination.binomial(candidates.size(), x);
+        ExecutorService pool = threads == 1 ? null
+                : Executors.newFixedThreadPool(threads, Metrics.get().threadFactory());
+        TopK best;
+        try {
+            if (checkpoint == null) {
+                best = scoreRange(pool, x, k, 0, count);
+            } else {
+                best = scoreWithCheckpoints(pool, x, k, count);
+            }
+        } finally {
+            if (pool != null) pool.shutdownNow();
+        }
+
+        return toResult(best, candidates, count);
+    }
+
+    /**
+     * Scores the groups of the ranks <code>[fromRank, toRank)</code> only, e.g. a shard of a search distributed over
+     * several processes.
+     *
+     * @return Best groups of the range, by the positions of their members in the list of candidates
+     */
+    public TopK search(int x, int k, long fromRank, long toRank) throws InterruptedException {
+        long count = Combination.binomial(candidates.size(), x);
+        if (fromRank < 0 || fromRank > toRank || toRank > count)
+            throw new IllegalArgumentException("Ranks [" + fromRank + ", " + toRank + ") out of [0, " + count + ")");
+        ExecutorService pool = threads == 1 ? null
+                : Executors.newFixedThreadPool(threads, Metrics.get().threadFactory());
+        try {
+            return scoreRange(pool, x, k, fromRank, toRank);
+        } finally {
+            if (pool != null) pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Records the progress of the search in the checkpoint, so that an interrupted search resumes from the last
+     * recorded rank. The ranks are then scored in rounds, and the progress is recorded after every round and written
+     * when the interval of the checkpoint has passed. The first round has {@link #CHECKPOINT_ROUND_GROUPS} groups,
+     * every later one as many as the earlier rounds scored in half the interval, so the checkpoint is written at least
+     * once per interval whatever the number of threads or the speed of the scorer. A search that finished before
+     * returns its recorded groups without scoring any.
+     */
+    public ExhaustiveSearch<V> setCheckpoint(SearchCheckpoint checkpoint) {
+        this.checkpoint = checkpoint;
+        return this;
+    }
+
+    private TopK scoreWithCheckpoints(ExecutorService pool, int x, int k, long count) throws InterruptedException {
+        long key = getSearchKey(candidates, x, k);
+        SearchCheckpoint.Progress progress = checkpoint.get(key, x, k, count);
+        TopK best = progress != null ? progress.getBest() : new TopK(k);
+        long next = progress != null ? progress.getNextRank() : 0;
+        long round = CHECKPOINT_ROUND_GROUPS;
+        long scored = 0;
+        long start = System.nanoTime();
+        while (next < count) {
+            long to = count - next <= round ? count : next + round;
+            best.merge(scoreRange(pool, x, k, next, to));
+            scored += to - next;
+            next = to;
+            // half the interval per round, so a write never waits for more than one round past its due time
+            double millis = Math.max(1, (System.nanoTime() - start) / 1e6);
+            round = Math.max(MIN_CHECKPOINT_ROUND_GROUPS,
+                    (long) Math.min(Long.MAX_VALUE / 2, scored / millis * checkpoint.getIntervalMillis() / 2));
+            checkpoint.update(key, x, next, count, best);
+            if (next < count) {
+                writeCheckpoint(false);
+            }
+        }
+        if (progress == null || !progress.isDone()) {
+            checkpoint.update(key, x, count, count, best);
+            writeCheckpoint(true);
+        }
+        return best;
+    }
+
+    private void writeCheckpoint(boolean now) {
+        try {
+            if (now) {
+                checkpoint.write();
+            } else {
+                checkpoint.writeIfDue();
+            }
+        } catch (IOException e) {
+            // losing a checkpoint must not lose the search
+            System.err.println("Cannot write the checkpoint: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return Key of the search of <code>k</code> groups of <code>x</code> of the candidates, e.g. in a checkpoint
+     */
+    static <V> long getSearchKey(List<V> candidates, int x, int k) {
+        long h = 31L * x + k;
+        for (V v : candidates) {
+            h = 31 * h + v.hashCode();
+        }
+        return h;
+    }
+
+    /**
+     * Scores the groups of the ranks <code>[from, to)</code> in the calling thread or, with a pool, in chunks.
+     */
+    private TopK scoreRange(ExecutorService pool, final int x, final int k, long from, long to)
+            throws InterruptedException {
+        if (pool == null) {
+            return scoreChunk(x, k, from, to);
+        }
+        TopK best = new TopK(k);
+        long[] bounds = Combination.split(to - from, threads * CHUNKS_PER_THREAD);
+        List<Future<TopK>> chunks = new ArrayList<Future<TopK>>(bounds.length - 1);
+        for (int i = 0; i + 1 < bounds.length; i++) {
+            final long chunkFrom = from + bounds[i];
+            final long chunkTo = from + bounds[i + 1];
+            chunks.add(pool.submit(new Callable<TopK>() {
+                public TopK call() {
+                    return scoreChunk(x, k, chunkFrom, chunkTo);
+                }
+            }));
+        }
+        for (Future<TopK> chunk : chunks) {
+            best.merge(Parallel.getResult(chunk));
+        }
+        return best;
+    }
+
+    /**
+     * Turns the positions kept by the heap into groups of candidates.
+     */
+    static <V> SearchResult<V> toResult(TopK best, List<V> candidates, long evaluations) {
+        if (best.size() == 0) {
+            return new SearchResult<V>(null, -1 * Double.MAX_VALUE, evaluations);
+        }
+        double[] scores = new double[best.size()];
+        int[][] positions = new int[best.size()][];
+        best.drain(scores, positions);
+        List<Set<V>> groups = new ArrayList<Set<V>>(positions.length);
+        for (int[] indices : positions) {
+            Set<V> group = new HashSet<V>();
+            for (int i : indices) {
+                group.add(candidates.get(i));
+            }
+            groups.add(group);
+        }
+        return new SearchResult<V>(groups, scores, evaluations);
+    }
+
+    private TopK scoreChunk(int x, int k, long from, long to) {
+        if (scorer instanceof IndexedGroupScorer && ((IndexedGroupScorer<V>) scorer).getVertexIndex() != null) {
+            return scoreChunkIncrementally((IndexedGroupScorer<V>) scorer, x, k, from, to);
+        }
+        TopK result = new TopK(k);
+        Combination groups = new Combination(candidates.size(), x, from, to);
+        Set<V> group = new HashSet<V>();
+        long enumerated = 0;
+        long rejected = 0;
+        while (groups.next()) {
+            enumerated++;
+            toGroup(groups.get(), group);
+            try {
+                result.offer(scorer.getVertexGroupScore(group), groups.get());
+            } catch (IllegalArgumentException e) {
+                rejected++;     // group not admissible for the scorer
+            }
+        }
+        count(enumerated, rejected);
+        return result;
+    }
+
+    private TopK scoreChunkIncrementally(IndexedGroupScorer<V> scorer, int x, int k, long from, long to) {
+        TopK result = new TopK(k);
+        int[] vertices = new int[candidates.size()];
+        for (int i = 0; i < vertices.length; i++) {
+            vertices[i] = scorer.getVertexIndex().indexOf(candidates.get(i));
+        }
+        IncrementalGroup state = scorer.newGroupState(x);
+        Combination groups = new Combination(candidates.size(), x, from, to);
+        long enumerated = 0;
+        long rejected = 0;
+        while (groups.next()) {
+            enumerated++;
+            int[] indices = groups.get();
+            // keep the shared prefix, it is shorter if a push of the previous group failed
+            state.popTo(Math.min(groups.getChangedFrom(), state.size()));
+            try {
+                for (int i = state.size(); i < x; i++) {
+                    state.push(vertices[indices[i]]);
+                }
+            } catch (IllegalArgumentException e) {
+                rejected++;
+                continue;   // group not admissible for the scorer
+            }
+            result.offer(state.getScore(), indices);
+        }
+        count(enumerated, rejected);
+        return result;
+    }
+
+    /**
+     * Adds the tallies of a chunk to the metrics, once per chunk to keep them off the loop over the groups.
+     */
+    private static void count(long enumerated, long rejected) {
+        Metrics metrics = Metrics.get();
+        metrics.counter(Metrics.GROUPS_ENUMERATED).add(enumerated);
+        metrics.counter(Metrics.GROUPS_SCORED).add(enumerated - rejected);
+        metrics.counter(Metrics.GROUPS_REJECTED).add(rejected);
+    }
+
+    private Set<V> toGroup(int[] indices, Set<V> group) {
+        group.clear();
+        for (int i : indices) {
+            group.add(candidates.get(i));
+        }
+        return group;
+    }
+}
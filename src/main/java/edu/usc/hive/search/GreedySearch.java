@@ -0,0 +1,203 @@
+package edu.usc.hive.search;
+
+import edu.usc.hive.scoring.GroupScoreContext;
+import edu.usc.hive.scoring.SuccessiveGroupBetweenness;
+import edu.usc.hive.shortestpath.PathCountStore;
+import edu.usc.hive.util.Metrics;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Approximate search that grows the group one vertex at a time, always adding the candidate with the largest
+ * marginal gain of group betweenness.
+ * <p/>
+ * Group betweenness including the periphery is a coverage function of the shortest paths, hence monotone and
+ * submodular: the gain of a candidate can only shrink as the group grows. The lazy variant (CELF, Leskovec et al.
+ * 2007) exploits that by keeping the gains computed in earlier rounds as upper bounds in a priority queue and
+ * re-evaluating only the candidate on top until it is up to date. If the periphery is excluded, the score differs
+ * from the coverage only by a correction that depends on the group size and its component (see
+ * {@link SuccessiveGroupBetweenness#getPeripheryCorrection(int[], int)}), which is the same for all candidates of a
+ * round, so the bounds are kept on the uncorrected gains.
+ * <p/>
+ * Needs dense storage of the path counts.
+ */
+public class GreedySearch<V> {
+
+    private final SuccessiveGroupBetweenness<V, ?> scorer;
+    private final List<V> candidates;
+    private final boolean lazy;
+
+    /**
+     * @param scorer     Scorer of the groups
+     * @param candidates Vertices the group is drawn from
+     * @param lazy       True for lazy (CELF) evaluation of the gains, false to evaluate all candidates every round
+     */
+    public GreedySearch(SuccessiveGroupBetweenness<V, ?> scorer, List<V> candidates, boolean lazy) {
+        if (scorer.getStore() == null)
+            throw new IllegalArgumentException("Greedy search requires dense storage of the path counts");
+        this.scorer = scorer;
+        this.candidates = candidates;
+        this.lazy = lazy;
+    }
+
+    /**
+     * Greedily selects a group of <code>x</code> candidates.
+     *
+     * @param x Size of the group
+     * @return Selected group in the order of selection and its score, or no group if no connected component has
+     * <code>x</code> candidates
+     */
+    public SearchResult<V> search(int x) {
+        Run run = new Run(x);
+        if (lazy) {
+            run.selectLazily();
+        } else {
+            run.selectEagerly();
+        }
+        Metrics.get().counter(Metrics.GROUPS_SCORED).add(run.evaluations);
+        if (run.size < x) {
+            return new SearchResult<V>(null, -1 * Double.MAX_VALUE, run.evaluations);
+        }
+        Set<V> group = new LinkedHashSet<V>();
+        for (int i = 0; i < x; i++) {
+            group.add(scorer.getVertexIndex().get(run.group[i]));
+        }
+        return new SearchResult<V>(group, run.score, run.evaluations);
+    }
+
+    /**
+     * State of a single search.
+     */
+    private class Run {
+        final int x;
+        final int[] vertices;           // dense indices of the candidates
+        final boolean[] selected;
+        final int[] group;
+        final GroupScoreContext context;
+        final PathCountStore store = scorer.getStore();
+        int size;
+        double score;
+        double coverage;                // score of the group without the periphery correction
+        long evaluations;
+
+        Run(int x) {
+            this.x = x;
+            vertices = new int[candidates.size()];
+            for (int i = 0; i < vertices.length; i++) {
+                vertices[i] = scorer.getVertexIndex().indexOf(candidates.get(i));
+            }
+            selected = new boolean[vertices.length];
+            group = new int[x];
+            context = scorer.newContext(x);
+        }
+
+        /**
+         * @return True if the candidate may extend the current group to a connected group of <code>x</code>
+         */
+        boolean isAdmissible(int c) {
+            if (selected[c]) return false;
+            if (size == 0) return store.getAccessibleVerticesCount(vertices[c]) >= x;
+            return !Double.isInfinite(store.getDistance(group[0], vertices[c]));
+        }
+
+        /**
+         * Scores the current group extended by the candidate. Like in the exhaustive search, a group whose score is
+         * not a number never wins.
+         */
+        double evaluate(int c) {
+            group[size] = vertices[c];
+            evaluations++;
+            return scorer.getVertexGroupScore(group, size + 1, context);
+        }
+
+        void select(int c, double newScore) {
+            group[size] = vertices[c];
+            selected[c] = true;
+            size++;
+            score = newScore;
+            coverage = newScore + scorer.getPeripheryCorrection(group, size);
+        }
+
+        void selectEagerly() {
+            while (size < x) {
+                int best = -1;
+                double bestScore = -1 * Double.MAX_VALUE;
+                for (int c = 0; c < vertices.length; c++) {
+                    if (isAdmissible(c)) {
+                        double candidateScore = evaluate(c);
+                        if (Double.isNaN(candidateScore)) continue;
+                        if (best < 0 || bestScore < candidateScore) {
+                            best = c;
+                            bestScore = candidateScore;
+                        }
+                    }
+                }
+                if (best < 0) return;
+                select(best, bestScore);
+            }
+        }
+
+        void selectLazily() {
+            // first round: the exact scores of all singletons, the component decides the correction
+            PriorityQueue<Gain> gains = new PriorityQueue<Gain>();
+            int best = -1;
+            double bestScore = -1 * Double.MAX_VALUE;
+            for (int c = 0; c < vertices.length; c++) {
+                if (isAdmissible(c)) {
+                    double candidateScore = evaluate(c);
+                    if (Double.isNaN(candidateScore)) continue;
+                    gains.add(new Gain(c, candidateScore + scorer.getPeripheryCorrection(group, 1), 0));
+                    if (best < 0 || bestScore < candidateScore) {
+                        best = c;
+                        bestScore = candidateScore;
+                    }
+                }
+            }
+            if (best < 0) return;
+            select(best, bestScore);
+
+            while (size < x) {
+                Gain top = gains.poll();
+                if (top == null) return;
+                if (!isAdmissible(top.candidate)) continue;
+                if (top.round == size) {
+                    select(top.candidate, top.score);
+                } else {
+                    double candidateScore = evaluate(top.candidate);
+                    if (Double.isNaN(candidateScore)) continue;
+                    double candidateCoverage = candidateScore + scorer.getPeripheryCorrection(group, size + 1);
+                    top.gain = candidateCoverage - coverage;
+                    top.score = candidateScore;
+                    top.round = size;
+                    gains.add(top);
+                }
+            }
+        }
+    }
+
+    /**
+     * Marginal gain of a candidate as of a given round - an upper bound of its gain in later rounds.
+     */
+    private static class Gain implements Comparable<Gain> {
+        final int candidate;
+        double gain;
+        double score;
+        int round;
+
+        Gain(int candidate, double gain, int round) {
+            this.candidate = candidate;
+            this.gain = gain;
+            this.round = round;
+        }
+
+        public int compareTo(Gain other) {
+            if (gain != other.gain) {
+                return gain > other.gain ? -1 : 1;
+            }
+            return candidate - other.candidate;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package edu.usc.hive.search;
+
+import edu.usc.hive.scoring.IncrementalGroup;
+import edu.usc.hive.scoring.IndexedGroupScorer;
+import edu.usc.hive.util.Metrics;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Greedy search on any scorer of groups given by dense vertex indices (see {@link IndexedGroupScorer}), e.g. the
+ * sampled one: the group grows one vertex at a time, always by the candidate that gives the highest score, and every
+ * round scores all remaining candidates by pushing them onto the group (see {@link IncrementalGroup}). Groups the
+ * scorer rejects are skipped; of equal scores the candidate earlier in the list wins. Unlike {@link GreedySearch}, the
+ * scorer isn't asked for its components, so the candidates should be those of a single component.
+ */
+public class IndexedGreedySearch<V> {
+
+    private final IndexedGroupScorer<V> scorer;
+    private final List<V> candidates;
+
+    /**
+     * @param scorer     Scorer of the groups, with dense vertex indices
+     * @param candidates Vertices the group is drawn from
+     */
+    public IndexedGreedySearch(IndexedGroupScorer<V> scorer, List<V> candidates) {
+        if (scorer.getVertexIndex() == null)
+            throw new IllegalArgumentException("Greedy search requires dense vertex indices");
+        this.scorer = scorer;
+        this.candidates = candidates;
+    }
+
+    /**
+     * Greedily selects a group of <code>x</code> candidates.
+     *
+     * @param x Size of the group
+     * @return Selected group in the order of selection and its score, or no group if no admissible group was found
+     */
+    public SearchResult<V> search(int x) {
+        int[] vertices = new int[candidates.size()];
+        for (int i = 0; i < vertices.length; i++) {
+            vertices[i] = scorer.getVertexIndex().indexOf(candidates.get(i));
+        }
+        boolean[] selected = new boolean[vertices.length];
+        int[] group = new int[x];
+        IncrementalGroup state = scorer.newGroupState(x);
+        double score = -1 * Double.MAX_VALUE;
+        long evaluations = 0;
+        for (int size = 0; size < x; size++) {
+            int best = -1;
+            double bestScore = -1 * Double.MAX_VALUE;
+            for (int c = 0; c < vertices.length; c++) {
+                if (selected[c]) continue;
+                evaluations++;
+                try {
+                    state.push(vertices[c]);
+                } catch (IllegalArgumentException e) {
+                    continue;   // group not admissible for the scorer
+                }
+                double candidateScore = state.getScore();
+                state.pop();
+                if (Double.isNaN(candidateScore)) continue;
+                if (best < 0 || bestScore < candidateScore) {
+                    best = c;
+                    bestScore = candidateScore;
+                }
+            }
+            if (best < 0) {
+                Metrics.get().counter(Metrics.GROUPS_SCORED).add(evaluations);
+                return new SearchResult<V>(null, -1 * Double.MAX_VALUE, evaluations);
+            }
+            group[size] = vertices[best];
+            state.push(vertices[best]);
+            selected[best] = true;
+            score = bestScore;
+        }
+        Metrics.get().counter(Metrics.GROUPS_SCORED).add(evaluations);
+        Set<V> result = new LinkedHashSet<V>();
+        for (int v : group) {
+            result.add(scorer.getVertexIndex().get(v));
+        }
+        return new SearchResult<V>(result, score, evaluations);
+    }
+}
@@ -0,0 +1,69 @@
+package edu.usc.hive.search;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Best group found by a search together with its score and the number of group evaluations it took. A top-K search
+ * also returns the runners-up, ordered from the best group.
+ */
+public class SearchResult<V> {
+
+    private final List<Set<V>> groups;
+    private final double[] scores;
+    private final double score;
+    private final long evaluations;
+
+    public SearchResult(Set<V> group, double score, long evaluations) {
+        this.groups = group == null ? Collections.<Set<V>>emptyList() : Collections.singletonList(group);
+        this.scores = group == null ? new double[0] : new double[]{score};
+        this.score = score;
+        this.evaluations = evaluations;
+    }
+
+    /**
+     * @param groups Groups ordered from the best one, at least one
+     * @param scores Scores of the groups
+     */
+    public SearchResult(List<Set<V>> groups, double[] scores, long evaluations) {
+        if (groups.isEmpty() || groups.size() != scores.length)
+            throw new IllegalArgumentException("Every group needs a score");
+        this.groups = groups;
+        this.scores = scores;
+        this.score = scores[0];
+        this.evaluations = evaluations;
+    }
+
+    /**
+     * @return Best group, or null if no admissible group was found
+     */
+    public Set<V> getGroup() {
+        return groups.isEmpty() ? null : groups.get(0);
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    /**
+     * @return Groups found, ordered from the best one - empty if no admissible group was found
+     */
+    public List<Set<V>> getGroups() {
+        return groups;
+    }
+
+    /**
+     * @return Score of the i-th best group
+     */
+    public double getScore(int i) {
+        return scores[i];
+    }
+
+    /**
+     * @return Number of groups the search scored
+     */
+    public long getEvaluations() {
+        return evaluations;
+    }
+}
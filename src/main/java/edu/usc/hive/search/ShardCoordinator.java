@@ -0,0 +1,269 @@
+package edu.usc.hive.search;
+
+import edu.usc.hive.Combination;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Distributes exhaustive searches over worker processes (see {@link ShardWorker}), e.g. several JVMs on one machine
+ * talking over loopback sockets or processes on several machines. The ranks of the combinations of a search are handed
+ * out as shards - contiguous rank ranges of at most {@link #SHARD_GROUPS} groups, see {@link Combination} - to the
+ * workers as they ask for work, and the best groups of every shard are merged into those of the search. Workers may
+ * join at any time; the shard of a worker that fails, disconnects, sends a malformed result or doesn't return its
+ * result within the shard timeout (see {@link #setShardTimeout(long)}) is handed to another one, and the worker is
+ * dropped.
+ * <p/>
+ * Every worker loads the same graph with the same options and thus has the same components and candidates: a search
+ * is identified by the key of its candidates, <code>x</code> and <code>k</code>, and the groups are sent as the
+ * positions of their members in the candidate list. Workers whose graph key differs from the coordinator's are
+ * rejected. The searches of a coordinator run one after another.
+ */
+public class ShardCoordinator implements Closeable {
+
+    /**
+     * Largest number of groups of a shard
+     */
+    public static final long SHARD_GROUPS = 1 << 24;
+    /**
+     * Default time a worker may take for a shard before it is considered hung
+     */
+    public static final long DEFAULT_SHARD_TIMEOUT_MILLIS = 10 * 60 * 1000;
+    private static final int MIN_SHARDS = 256;      // smaller shards for small searches, so all workers take part
+
+    private final ServerSocket server;
+    private final long graphKey;
+    private volatile long shardTimeoutMillis = DEFAULT_SHARD_TIMEOUT_MILLIS;
+    private Job job;            // running search, null between searches
+    private boolean closed;
+
+    /**
+     * Search whose shards are handed out.
+     */
+    private static class Job {
+        final long key;
+        final int candidates;
+        final int x;
+        final int k;
+        final long count;
+        final long shardGroups;
+        final Deque<long[]> failed = new ArrayDeque<long[]>();  // shards to be handed out again
+        final TopK best;
+        long next;              // first rank not handed out yet
+        long scored;            // number of ranks of the merged shards
+
+        Job(long key, int candidates, int x, int k, long count, long shardGroups) {
+            this.key = key;
+            this.candidates = candidates;
+            this.x = x;
+            this.k = k;
+            this.count = count;
+            this.shardGroups = shardGroups;
+            this.best = new TopK(k);
+        }
+    }
+
+    /**
+     * Starts to accept workers.
+     *
+     * @param address  Address to listen on, e.g. the loopback address for workers on the same machine
+     * @param port     Port to listen on
+     * @param graphKey Key of the graph and the options the scores depend on, which workers have to match
+     */
+    public ShardCoordinator(InetAddress address, int port, long graphKey) throws IOException {
+        this.server = new ServerSocket(port, 50, address);
+        this.graphKey = graphKey;
+        Thread acceptor = new Thread(new Runnable() {
+            public void run() {
+                accept();
+            }
+        }, "shard-coordinator");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * Sets the time a worker may take for a shard - a shard is up to {@link #SHARD_GROUPS} groups, so it should be
+     * well above the time of scoring as many groups on a worker. A worker that takes longer is dropped and its shard
+     * is handed to another one. Applies from the next shard handed out.
+     *
+     * @param millis Positive timeout
+     */
+    public ShardCoordinator setShardTimeout(long millis) {
+        if (millis <= 0 || millis > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Shard timeout must be positive and fit into an int of milliseconds");
+        this.shardTimeoutMillis = millis;
+        return this;
+    }
+
+    /**
+     * @return Port the coordinator listens on
+     */
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * Finds the <code>k</code> groups of <code>x</code> candidates with the highest scores on the workers, waiting for
+     * workers to join if there are none.
+     *
+     * @param candidates Vertices the groups are drawn from, in the order of the workers' candidates
+     * @return Best groups ordered by their scores, of equal scores the one earlier in the candidate order first
+     */
+    public <V> SearchResult<V> search(List<V> candidates, int x, int k) throws InterruptedException {
+        long count = Combination.binomial(candidates.size(), x);
+        long shardGroups = Math.max(1, Math.min(SHARD_GROUPS, count / MIN_SHARDS));
+        Job search = new Job(ExhaustiveSearch.getSearchKey(candidates, x, k), candidates.size(), x, k, count,
+                shardGroups);
+        synchronized (this) {
+            if (closed)
+                throw new IllegalStateException("Coordinator is closed");
+            if (job != null)
+                throw new IllegalStateException("Coordinator runs another search");
+            job = search;
+            notifyAll();
+            try {
+                while (search.scored < count) {
+                    wait();
+                }
+            } finally {
+                job = null;
+            }
+        }
+        return ExhaustiveSearch.toResult(search.best, candidates, count);
+    }
+
+    /**
+     * Tells the workers that there is no more work and stops accepting new ones.
+     */
+    public void close() throws IOException {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        server.close();
+    }
+
+    private void accept() {
+        while (true) {
+            final Socket socket;
+            try {
+                socket = server.accept();
+            } catch (SocketException e) {
+                return;     // closed
+            } catch (IOException e) {
+                System.err.println("Cannot accept a worker: " + e.getMessage());
+                continue;
+            }
+            Thread session = new Thread(new Runnable() {
+                public void run() {
+                    serve(socket);
+                }
+            }, "shard-session-" + socket.getRemoteSocketAddress());
+            session.setDaemon(true);
+            session.start();
+        }
+    }
+
+    /**
+     * Hands shards to a worker until the coordinator is closed or the worker fails.
+     */
+    private void serve(Socket socket) {
+        Job current = null;
+        long[] shard = null;
+        try {
+            socket.setTcpNoDelay(true);
+            // the longest a read waits: for the result of a shard, or for the handshake of a silent client
+            socket.setSoTimeout((int) shardTimeoutMillis);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            if (in.readLong() != ShardProtocol.MAGIC || in.readInt() != ShardProtocol.VERSION
+                    || in.readLong() != graphKey) {
+                out.writeInt(ShardProtocol.REJECTED);
+                out.flush();
+                System.err.println("Rejected worker " + socket.getRemoteSocketAddress() + " of another graph");
+                return;
+            }
+            out.writeInt(ShardProtocol.ACCEPTED);
+            out.flush();
+            while (true) {
+                synchronized (this) {
+                    while (!closed && (job == null || job.failed.isEmpty() && job.next == job.count)) {
+                        wait();
+                    }
+                    if (closed) break;
+                    current = job;
+                    shard = takeShard(current);
+                }
+                out.writeInt(ShardProtocol.TASK);
+                out.writeLong(current.key);
+                out.writeInt(current.x);
+                out.writeInt(current.k);
+                out.writeLong(shard[0]);
+                out.writeLong(shard[1]);
+                out.flush();
+                socket.setSoTimeout((int) shardTimeoutMillis);
+                int reply = in.readInt();
+                if (reply == ShardProtocol.UNKNOWN_SEARCH)
+                    throw new IOException("the worker doesn't have the candidates of the search");
+                if (reply != ShardProtocol.RESULT)
+                    throw new IOException("unexpected reply " + reply);
+                TopK best = ShardProtocol.readGroups(in, current.x, current.k, current.candidates);
+                synchronized (this) {
+                    current.best.merge(best);
+                    current.scored += shard[1] - shard[0];
+                    shard = null;
+                    notifyAll();
+                }
+            }
+            out.writeInt(ShardProtocol.DONE);
+            out.flush();
+        } catch (EOFException e) {
+            System.err.println("Worker " + socket.getRemoteSocketAddress() + " disconnected");
+        } catch (SocketTimeoutException e) {
+            System.err.println("Worker " + socket.getRemoteSocketAddress() + " timed out");
+        } catch (IOException e) {
+            System.err.println("Worker " + socket.getRemoteSocketAddress() + " failed: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (shard != null) {
+                synchronized (this) {
+                    current.failed.add(shard);
+                    notifyAll();
+                }
+            }
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // nothing left to tell the worker
+            }
+        }
+    }
+
+    /**
+     * @return Ranks <code>[from, to)</code> of the next shard of the search
+     */
+    private static long[] takeShard(Job job) {
+        if (!job.failed.isEmpty()) {
+            return job.failed.poll();
+        }
+        long from = job.next;
+        long to = job.count - from <= job.shardGroups ? job.count : from + job.shardGroups;
+        job.next = to;
+        return new long[]{from, to};
+    }
+}
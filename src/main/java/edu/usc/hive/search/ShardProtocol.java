@@ -0,0 +1,67 @@
+package edu.usc.hive.search;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Messages between a {@link ShardCoordinator} and its {@link ShardWorker}s, as big-endian data streams:
+ * <pre>
+ *  worker:      long magic "NXGBSHRD", int version, long graph key
+ *  coordinator: int ACCEPTED or REJECTED
+ *  then repeatedly
+ *  coordinator: int TASK, long search key, int x, int k, long from rank, long to rank - or int DONE
+ *  worker:      int RESULT, int number of groups, per group: double score, int[x] positions - or int UNKNOWN_SEARCH
+ * </pre>
+ */
+class ShardProtocol {
+
+    static final long MAGIC = 0x4E58474253485244L;    // "NXGBSHRD"
+    static final int VERSION = 1;
+
+    static final int ACCEPTED = 1;
+    static final int REJECTED = 2;
+    static final int TASK = 3;
+    static final int DONE = 4;
+    static final int RESULT = 5;
+    static final int UNKNOWN_SEARCH = 6;
+
+    private ShardProtocol() {
+    }
+
+    static void writeGroups(DataOutputStream out, TopK best) throws IOException {
+        out.writeInt(best.size());
+        for (int i = 0; i < best.size(); i++) {
+            out.writeDouble(best.getScore(i));
+            for (int position : best.getGroup(i)) {
+                out.writeInt(position);
+            }
+        }
+    }
+
+    /**
+     * Reads the groups of a result into a heap of <code>k</code> groups.
+     *
+     * @param candidates Number of candidates of the search
+     * @throws IOException if the result has too many groups or a group isn't a combination of the candidates, i.e.
+     * its positions aren't increasing in <code>[0, candidates)</code>
+     */
+    static TopK readGroups(DataInputStream in, int x, int k, int candidates) throws IOException {
+        int size = in.readInt();
+        if (size < 0 || size > k)
+            throw new IOException("Result of " + size + " groups, expected at most " + k);
+        TopK best = new TopK(k);
+        int[] group = new int[x];
+        for (int i = 0; i < size; i++) {
+            double score = in.readDouble();
+            for (int j = 0; j < x; j++) {
+                group[j] = in.readInt();
+                if (group[j] < (j == 0 ? 0 : group[j - 1] + 1) || group[j] >= candidates)
+                    throw new IOException("Group with position " + group[j] + " is no combination of " + candidates
+                            + " candidates");
+            }
+            best.offer(score, group);
+        }
+        return best;
+    }
+}
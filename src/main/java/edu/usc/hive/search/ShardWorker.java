@@ -0,0 +1,110 @@
+package edu.usc.hive.search;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Worker process of a {@link ShardCoordinator}: scores the shards the coordinator hands out with an
+ * {@link ExhaustiveSearch} on the components of its own copy of the graph and sends back their best groups.
+ */
+public class ShardWorker<V> {
+
+    private final ComponentSearch<V> components;
+    private final int threads;
+    private final Map<Long, Integer> componentOfSearch = new HashMap<Long, Integer>();
+    private final Map<Long, List<V>> candidatesOfSearch = new HashMap<Long, List<V>>();
+    private CandidateFilter<V> filter;
+
+    /**
+     * @param components Components and candidates, built from the same graph and options as the coordinator's
+     * @param threads    Number of threads scoring a shard
+     */
+    public ShardWorker(ComponentSearch<V> components, int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("Number of threads must be positive");
+        this.components = components;
+        this.threads = threads;
+    }
+
+    /**
+     * Filters the candidates of the components as the coordinator does (see {@link CandidateFilter#apply}).
+     */
+    public ShardWorker<V> setFilter(CandidateFilter<V> filter) {
+        this.filter = filter;
+        return this;
+    }
+
+    /**
+     * Connects to the coordinator and scores shards until it has no more work.
+     *
+     * @param graphKey Key of the graph and the options the scores depend on
+     * @return Number of shards scored
+     * @throws IllegalStateException if the coordinator runs another graph
+     */
+    public long run(String host, int port, long graphKey) throws IOException, InterruptedException {
+        Socket socket = new Socket(host, port);
+        try {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            out.writeLong(ShardProtocol.MAGIC);
+            out.writeInt(ShardProtocol.VERSION);
+            out.writeLong(graphKey);
+            out.flush();
+            if (in.readInt() != ShardProtocol.ACCEPTED)
+                throw new IllegalStateException("Coordinator " + host + ":" + port + " runs another graph");
+
+            long shards = 0;
+            while (in.readInt() == ShardProtocol.TASK) {
+                long key = in.readLong();
+                int x = in.readInt();
+                int k = in.readInt();
+                long from = in.readLong();
+                long to = in.readLong();
+                Integer component = findComponent(key, x, k);
+                if (component == null) {
+                    out.writeInt(ShardProtocol.UNKNOWN_SEARCH);
+                    out.flush();
+                    throw new IllegalStateException("No component has the candidates of search " + key);
+                }
+                TopK best = new ExhaustiveSearch<V>(components.getScorer(component), candidatesOfSearch.get(key),
+                        threads).search(x, k, from, to);
+                out.writeInt(ShardProtocol.RESULT);
+                ShardProtocol.writeGroups(out, best);
+                out.flush();
+                shards++;
+            }
+            return shards;
+        } finally {
+            socket.close();
+        }
+    }
+
+    /**
+     * @return Component whose candidates have the key of the search, null if there is none
+     */
+    private Integer findComponent(long key, int x, int k) {
+        if (!componentOfSearch.containsKey(key)) {
+            for (int c = 0; c < components.size(); c++) {
+                List<V> candidates = components.getCandidates(c);
+                if (candidates.size() < x) continue;
+                if (filter != null) {
+                    candidates = filter.filter(components.getScorer(c), candidates, x);
+                }
+                if (ExhaustiveSearch.getSearchKey(candidates, x, k) == key) {
+                    componentOfSearch.put(key, c);
+                    candidatesOfSearch.put(key, candidates);
+                    break;
+                }
+            }
+        }
+        return componentOfSearch.get(key);
+    }
+}
@@ -0,0 +1,170 @@
+package edu.usc.hive.search;
+
+/**
+ * The <code>k</code> best groups of one size seen so far, each given by its score and the ascending positions of its
+ * members in the list of candidates. The groups are kept in a bounded binary min-heap whose root is the worst kept
+ * group, so an offer that doesn't make it into the top costs a single comparison and copies nothing.
+ * <p/>
+ * Of two groups with the same score the one whose positions are lexicographically smaller - the one enumerated earlier
+ * by {@link edu.usc.hive.Combination} - is better, so the kept groups depend only on the offered ones, not on the
+ * order of the offers. Heaps filled by different threads can therefore be merged in any order.
+ */
+public class TopK {
+
+    private final int capacity;
+    private final double[] scores;
+    private final int[][] groups;
+    private int size;
+
+    /**
+     * @param capacity Number of groups to keep
+     */
+    public TopK(int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("Number of groups to keep must be positive");
+        this.capacity = capacity;
+        this.scores = new double[capacity];
+        this.groups = new int[capacity][];
+    }
+
+    /**
+     * Keeps the group if it is among the best ones. NaN scores are ignored, so is a group that is kept already.
+     *
+     * @param group Positions of the members in ascending order, copied if the group is kept
+     * @return True if the group was kept
+     */
+    public boolean offer(double score, int[] group) {
+        if (Double.isNaN(score)) return false;
+        if (size == capacity) {
+            if (!isBetter(score, group, scores[0], groups[0])) return false;
+            if (contains(group)) return false;
+            scores[0] = score;
+            System.arraycopy(group, 0, groups[0], 0, group.length);  // reuses the array of the evicted group
+            siftDown(0);
+        } else {
+            if (contains(group)) return false;
+            scores[size] = score;
+            groups[size] = group.clone();
+            siftUp(size++);
+        }
+        return true;
+    }
+
+    /**
+     * Offers all groups kept by the other heap.
+     */
+    public void merge(TopK other) {
+        for (int i = 0; i < other.size; i++) {
+            offer(other.scores[i], other.groups[i]);
+        }
+    }
+
+    public boolean isFull() {
+        return size == capacity;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return Score of the <code>i</code>-th kept group, in the order of the heap
+     */
+    public double getScore(int i) {
+        if (i >= size)
+            throw new IndexOutOfBoundsException("Group " + i + " of " + size);
+        return scores[i];
+    }
+
+    /**
+     * @return Positions of the members of the <code>i</code>-th kept group, in the order of the heap - not to be
+     * modified
+     */
+    public int[] getGroup(int i) {
+        if (i >= size)
+            throw new IndexOutOfBoundsException("Group " + i + " of " + size);
+        return groups[i];
+    }
+
+    /**
+     * @return Score a group has to exceed to be kept, negative infinity while fewer than <code>k</code> groups are kept
+     */
+    public double getThreshold() {
+        return size == capacity ? scores[0] : Double.NEGATIVE_INFINITY;
+    }
+
+    /**
+     * Empties the heap into arrays ordered from the best group to the worst one.
+     *
+     * @param sortedScores Array of at least {@link #size()} elements receiving the scores
+     * @param sortedGroups Array of at least {@link #size()} elements receiving the positions of the members
+     * @return Number of groups
+     */
+    public int drain(double[] sortedScores, int[][] sortedGroups) {
+        int count = size;
+        while (size > 0) {
+            sortedScores[size - 1] = scores[0];
+            sortedGroups[size - 1] = groups[0];
+            size--;
+            scores[0] = scores[size];
+            groups[0] = groups[size];
+            groups[size] = null;
+            siftDown(0);
+        }
+        return count;
+    }
+
+    private boolean contains(int[] group) {
+        for (int i = 0; i < size; i++) {
+            if (compare(group, groups[i]) == 0) return true;
+        }
+        return false;
+    }
+
+    private static int compare(int[] group, int[] other) {
+        for (int i = 0; i < Math.min(group.length, other.length); i++) {
+            if (group[i] != other[i]) return group[i] < other[i] ? -1 : 1;
+        }
+        return group.length - other.length;
+    }
+
+    private static boolean isBetter(double score, int[] group, double otherScore, int[] other) {
+        return score > otherScore || (score == otherScore && compare(group, other) < 0);
+    }
+
+    private void siftUp(int i) {
+        double score = scores[i];
+        int[] group = groups[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!isBetter(scores[parent], groups[parent], score, group)) break;
+            scores[i] = scores[parent];
+            groups[i] = groups[parent];
+            i = parent;
+        }
+        scores[i] = score;
+        groups[i] = group;
+    }
+
+    private void siftDown(int i) {
+        double score = scores[i];
+        int[] group = groups[i];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) break;
+            if (child + 1 < size && isBetter(scores[child], groups[child], scores[child + 1], groups[child + 1])) {
+                child++;
+            }
+            if (!isBetter(score, group, scores[child], groups[child])) break;
+            scores[i] = scores[child];
+            groups[i] = groups[child];
+            i = child;
+        }
+        scores[i] = score;
+        groups[i] = group;
+    }
+}
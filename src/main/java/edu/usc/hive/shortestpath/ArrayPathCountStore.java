@@ -0,0 +1,53 @@
+package edu.usc.hive.shortestpath;
+
+import java.util.Arrays;
+
+/**
+ * {@link PathCountStore} backed by flat row-major arrays on the heap.
+ */
+public class ArrayPathCountStore extends PathCountStore {
+
+    protected final double[] distances;
+    protected final double[] pathCounts;
+    protected final double[] partialDependencies;
+
+    public ArrayPathCountStore(int n) {
+        super(n);
+        if ((long) n * n > MAX_ARRAY_LENGTH)
+            throw new IllegalArgumentException("Graph with " + n + " vertices is too large for array storage");
+        distances = new double[n * n];
+        pathCounts = new double[n * n];
+        partialDependencies = new double[n * n];
+        Arrays.fill(distances, Double.POSITIVE_INFINITY);
+    }
+
+    @Override
+    public double getDistance(int source, int target) {
+        return distances[source * n + target];
+    }
+
+    @Override
+    public double getPathCount(int source, int target) {
+        return pathCounts[source * n + target];
+    }
+
+    @Override
+    public double getPartialDependency(int source, int intermediary) {
+        return partialDependencies[source * n + intermediary];
+    }
+
+    @Override
+    public void setDistance(int source, int target, double distance) {
+        distances[source * n + target] = distance;
+    }
+
+    @Override
+    public void setPathCount(int source, int target, double count) {
+        pathCounts[source * n + target] = count;
+    }
+
+    @Override
+    public void setPartialDependency(int source, int intermediary, double dependency) {
+        partialDependencies[source * n + intermediary] = dependency;
+    }
+}
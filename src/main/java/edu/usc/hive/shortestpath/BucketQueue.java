@@ -0,0 +1,99 @@
+package edu.usc.hive.shortestpath;
+
+import java.util.Arrays;
+
+/**
+ * Monotone min-priority queue of the vertex indices <code>0..n-1</code> keyed by non-negative integers, for Dijkstra's
+ * algorithm on integral edge weights of at most <code>C</code> (Dial 1969). While a vertex with key <code>d</code> is
+ * settled, all queued keys lie in <code>[d, d + C]</code>, so <code>C + 1</code> buckets used circularly hold one key
+ * each. Buckets are doubly linked lists of vertices, so decreasing a key moves the vertex in constant time; a poll
+ * scans the empty buckets up to the next key, <code>O(m + D)</code> over a pass whose largest distance is
+ * <code>D</code>.
+ * <p/>
+ * Keys must not decrease below the key polled last, which holds for Dijkstra's algorithm on non-negative weights.
+ */
+public class BucketQueue {
+
+    private final int[] heads;      // first vertex of a bucket, -1 if the bucket is empty
+    private final int[] next;
+    private final int[] previous;   // -1 for the first vertex of a bucket
+    private final long[] keys;
+    private final boolean[] queued;
+    private long current;           // smallest key that may be queued
+    private int size;
+
+    /**
+     * @param n         Number of vertices
+     * @param maxWeight Largest edge weight
+     */
+    public BucketQueue(int n, int maxWeight) {
+        if (maxWeight < 0)
+            throw new IllegalArgumentException("Edges weights must be non-negative");
+        this.heads = new int[maxWeight + 1];
+        this.next = new int[n];
+        this.previous = new int[n];
+        this.keys = new long[n];
+        this.queued = new boolean[n];
+        Arrays.fill(heads, -1);
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Queues the vertex with the key, or moves it if it is queued already with a larger key.
+     *
+     * @param key Integral key, at least the key polled last
+     */
+    public void insertOrDecrease(int v, double key) {
+        long k = (long) key;
+        if (queued[v]) {
+            if (k >= keys[v]) return;
+            unlink(v);
+        } else {
+            if (size == 0 && k < current) current = k;  // only a new pass, e.g. from another source, goes back
+            queued[v] = true;
+            size++;
+        }
+        keys[v] = k;
+        int b = bucket(k);
+        previous[v] = -1;
+        next[v] = heads[b];
+        if (heads[b] >= 0) previous[heads[b]] = v;
+        heads[b] = v;
+    }
+
+    /**
+     * Removes a vertex with the smallest key.
+     */
+    public int poll() {
+        if (size == 0)
+            throw new IllegalStateException("Queue is empty");
+        while (heads[bucket(current)] < 0) {
+            current++;
+        }
+        int v = heads[bucket(current)];
+        unlink(v);
+        queued[v] = false;
+        size--;
+        return v;
+    }
+
+    private void unlink(int v) {
+        if (previous[v] >= 0) {
+            next[previous[v]] = next[v];
+        } else {
+            heads[bucket(keys[v])] = next[v];
+        }
+        if (next[v] >= 0) previous[next[v]] = previous[v];
+    }
+
+    private int bucket(long key) {
+        return (int) (key % heads.length);
+    }
+}
@@ -0,0 +1,183 @@
+package edu.usc.hive.shortestpath;
+
+import edu.uci.ics.jung.graph.Graph;
+import edu.uci.ics.jung.graph.Hypergraph;
+import edu.uci.ics.jung.graph.util.EdgeType;
+import edu.uci.ics.jung.graph.util.Pair;
+import org.apache.commons.collections15.Transformer;
+
+import java.util.Arrays;
+
+/**
+ * Immutable compressed sparse row copy of a weighted graph: the neighbours of vertex <code>v</code> are
+ * <code>targets[offsets[v]..offsets[v+1])</code> with the weights at the same positions. Vertices are the dense indices
+ * of a {@link VertexIndex}, undirected edges are stored in both directions. Parallel edges are merged into the
+ * lightest one and self-loops are dropped, neither of them takes part in a shortest path.
+ */
+public class CsrGraph {
+
+    private final int[] offsets;
+    private final int[] targets;
+    private final double[] weights;
+    private final double uniformWeight;
+    private final int maxIntegerWeight;
+
+    protected CsrGraph(int[] offsets, int[] targets, double[] weights) {
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+        double uniform = weights.length > 0 ? weights[0] : 1d;
+        double max = 0;
+        for (double w : weights) {
+            if (w != uniform) {
+                uniform = Double.NaN;
+            }
+            if (w != Math.rint(w) || w >= Integer.MAX_VALUE) {
+                max = Double.NaN;
+            }
+            max = Math.max(max, w);
+        }
+        this.uniformWeight = uniform;
+        this.maxIntegerWeight = Double.isNaN(max) ? -1 : (int) max;
+    }
+
+    /**
+     * Copies the graph into the compressed sparse row form.
+     *
+     * @param g      Graph with binary edges
+     * @param nev    Non-negative edge weights
+     * @param index  Dense indices of the vertices of the graph
+     * @throws IllegalArgumentException if a weight is negative or an edge is not binary
+     */
+    @SuppressWarnings("unchecked")
+    public static <V, E> CsrGraph create(Hypergraph<V, E> g, Transformer<E, ? extends Number> nev,
+                                         VertexIndex<V> index) {
+        int n = index.size();
+        int edgeCount = g.getEdgeCount();
+        int[] sources = new int[edgeCount];
+        int[] dests = new int[edgeCount];
+        double[] edgeWeights = new double[edgeCount];
+        boolean[] directed = new boolean[edgeCount];
+        int[] degrees = new int[n + 1];
+        int m = 0;
+        for (E e : g.getEdges()) {
+            int u, v;
+            if (g instanceof Graph) {
+                Pair<V> endpoints = ((Graph<V, E>) g).getEndpoints(e);
+                u = index.indexOf(endpoints.getFirst());
+                v = index.indexOf(endpoints.getSecond());
+                directed[m] = ((Graph<V, E>) g).getEdgeType(e) == EdgeType.DIRECTED;
+            } else {
+                if (g.getIncidentCount(e) > 2)
+                    throw new IllegalArgumentException("Edge " + e + " is not binary");
+                Object[] endpoints = g.getIncidentVertices(e).toArray();
+                u = index.indexOf((V) endpoints[0]);
+                v = index.indexOf((V) endpoints[endpoints.length - 1]);
+            }
+            double weight = nev.transform(e).doubleValue();
+            if (weight < 0)
+                throw new IllegalArgumentException("Edges weights must be non-negative");
+            if (u == v) continue;
+            sources[m] = u;
+            dests[m] = v;
+            edgeWeights[m] = weight;
+            degrees[u + 1]++;
+            if (!directed[m]) degrees[v + 1]++;
+            m++;
+        }
+
+        int[] offsets = new int[n + 1];
+        for (int v = 0; v < n; v++) {
+            offsets[v + 1] = offsets[v] + degrees[v + 1];
+        }
+        int[] next = Arrays.copyOf(offsets, n);
+        int[] targets = new int[offsets[n]];
+        double[] weights = new double[offsets[n]];
+        for (int i = 0; i < m; i++) {
+            targets[next[sources[i]]] = dests[i];
+            weights[next[sources[i]]++] = edgeWeights[i];
+            if (!directed[i]) {
+                targets[next[dests[i]]] = sources[i];
+                weights[next[dests[i]]++] = edgeWeights[i];
+            }
+        }
+        return mergeParallelEdges(n, offsets, targets, weights);
+    }
+
+    private static CsrGraph mergeParallelEdges(int n, int[] offsets, int[] targets, double[] weights) {
+        int[] position = new int[n];
+        Arrays.fill(position, -1);
+        int[] merged = new int[n + 1];
+        int k = 0;
+        for (int v = 0; v < n; v++) {
+            int from = k;
+            for (int i = offsets[v]; i < offsets[v + 1]; i++) {
+                int t = targets[i];
+                int p = position[t];
+                if (p >= from) {
+                    weights[p] = Math.min(weights[p], weights[i]);
+                } else {
+                    position[t] = k;
+                    targets[k] = t;
+                    weights[k++] = weights[i];
+                }
+            }
+            merged[v + 1] = k;
+        }
+        if (k == targets.length) {
+            return new CsrGraph(merged, targets, weights);
+        }
+        return new CsrGraph(merged, Arrays.copyOf(targets, k), Arrays.copyOf(weights, k));
+    }
+
+    /**
+     * @return Number of vertices
+     */
+    public int size() {
+        return offsets.length - 1;
+    }
+
+    /**
+     * @return Number of stored arcs - twice the number of undirected edges
+     */
+    public int getArcCount() {
+        return targets.length;
+    }
+
+    /**
+     * @return Position of the first neighbour of the vertex in {@link #getTargets()} and {@link #getWeights()}
+     */
+    public int getFirstArc(int v) {
+        return offsets[v];
+    }
+
+    /**
+     * @return Position after the last neighbour of the vertex
+     */
+    public int getEndArc(int v) {
+        return offsets[v + 1];
+    }
+
+    public int[] getTargets() {
+        return targets;
+    }
+
+    public double[] getWeights() {
+        return weights;
+    }
+
+    /**
+     * @return Weight shared by all edges, or NaN if the weights differ
+     */
+    public double getUniformWeight() {
+        return uniformWeight;
+    }
+
+    /**
+     * @return Largest weight if all weights are integers below <code>2^31 - 1</code>, e.g. quantized ones (see
+     * {@link PathCountOptions#setWeightResolution(double)}), -1 otherwise
+     */
+    public int getMaxIntegerWeight() {
+        return maxIntegerWeight;
+    }
+}
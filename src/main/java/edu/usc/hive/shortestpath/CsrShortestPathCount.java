@@ -0,0 +1,347 @@
+package edu.usc.hive.shortestpath;
+
+import edu.usc.hive.util.Metrics;
+import edu.usc.hive.util.Parallel;
+
+import java.util.Arrays;
+
+/**
+ * All-pairs shortest path counting on a {@link CsrGraph}, filling a {@link PathCountStore} with the same statistics as
+ * {@link DijkstraShortestPathCount}: distances, shortest path counts and partial dependencies including the end
+ * nodes (Puzis et al. 2007).
+ * <p/>
+ * Every source runs on primitive arrays reused between sources: Dijkstra's algorithm on an {@link IndexedDaryHeap},
+ * or a breadth-first search if all edges have the same positive weight. Path counts are accumulated as doubles (see
+ * {@link PathCountStore}) while relaxing edges out of settled vertices and the dependencies are accumulated in the
+ * reverse order of settling (Brandes 2001), so predecessor lists are never built - a predecessor is a neighbour
+ * settled earlier whose distance plus the weight of the edge is the distance of the vertex.
+ * <p/>
+ * If the weights are small integers, e.g. quantized ones (see {@link PathCountOptions#setWeightResolution(double)}),
+ * Dijkstra's algorithm runs on a {@link BucketQueue} instead of the heap.
+ */
+public class CsrShortestPathCount {
+
+    /**
+     * Largest integral weight for which the bucket queue is used - a pass scans as many buckets as its largest
+     * distance, which should stay in the order of the number of arcs.
+     */
+    public static final int MAX_BUCKET_WEIGHT = 1 << 16;
+
+    private static final Metrics.Timer SOURCE_TIMER = Metrics.get().timer(Metrics.PATHS_SOURCE);
+
+    private final CsrGraph graph;
+    private final int bucketWeight;     // largest weight if the bucket queue is used, -1 otherwise
+
+    public CsrShortestPathCount(CsrGraph graph) {
+        this.graph = graph;
+        int maxWeight = graph.getMaxIntegerWeight();
+        this.bucketWeight = maxWeight >= 0 && maxWeight <= MAX_BUCKET_WEIGHT ? maxWeight : -1;
+    }
+
+    /**
+     * Computes the rows of all sources.
+     *
+     * @param store       Store of the size of the graph
+     * @param parallelism Number of threads, each source is computed by a single thread
+     */
+    public void computeAll(final PathCountStore store, int parallelism) {
+        if (store.size() != graph.size())
+            throw new IllegalArgumentException("Store of size " + store.size() + " doesn't fit graph of size "
+                    + graph.size());
+        Parallel.forEachRange(graph.size(), parallelism, new Parallel.RangeTask() {
+            public void run(int from, int to) {
+                Workspace workspace = new Workspace(graph.size(), bucketWeight);
+                for (int s = from; s < to; s++) {
+                    compute(s, store, workspace);
+                }
+            }
+        });
+    }
+
+    /**
+     * Recomputes the rows of some sources, e.g. of those affected by a change of the graph.
+     *
+     * @param store       Store of the size of the graph
+     * @param sources     Dense indices of the sources
+     * @param parallelism Number of threads, each source is computed by a single thread
+     */
+    public void compute(final PathCountStore store, final int[] sources, int parallelism) {
+        if (store.size() != graph.size())
+            throw new IllegalArgumentException("Store of size " + store.size() + " doesn't fit graph of size "
+                    + graph.size());
+        Parallel.forEachRange(sources.length, parallelism, new Parallel.RangeTask() {
+            public void run(int from, int to) {
+                Workspace workspace = new Workspace(graph.size(), bucketWeight);
+                for (int i = from; i < to; i++) {
+                    compute(sources[i], store, workspace);
+                }
+            }
+        });
+    }
+
+    /**
+     * Computes and stores the row of one source.
+     */
+    protected void compute(int source, PathCountStore store, Workspace ws) {
+        long start = System.nanoTime();
+        int count = settle(source, ws);
+        accumulateDependencies(source, count, ws);
+
+        store.clearRow(source);
+        boolean symmetric = store.isSymmetric();
+        for (int i = 0; i < count; i++) {
+            int t = ws.order[i];
+            if (t >= source || !symmetric) {     // otherwise written by the pass of t
+                store.setDistance(source, t, ws.distances[t]);
+                store.setPathCount(source, t, ws.pathCounts[t]);
+            }
+            store.setPartialDependency(source, t, ws.dependencies[t]);
+        }
+        store.setAccessibleVerticesCount(source, count);
+        ws.reset(count);
+        SOURCE_TIMER.recordSince(start);
+    }
+
+    /**
+     * Computes the distances and path counts of the source by the traversal suited to the weights.
+     *
+     * @return Number of settled vertices, which are in <code>ws.order</code> in the order of settling
+     */
+    private int settle(int source, Workspace ws) {
+        double uniformWeight = graph.getUniformWeight();
+        if (uniformWeight > 0) {
+            return breadthFirst(source, uniformWeight, ws);
+        } else if (ws.buckets != null) {
+            return dial(source, ws);
+        } else {
+            return dijkstra(source, ws);
+        }
+    }
+
+    /**
+     * @return Number of settled vertices, which are in <code>ws.order</code> in the order of settling
+     */
+    private int dijkstra(int source, Workspace ws) {
+        int[] targets = graph.getTargets();
+        double[] weights = graph.getWeights();
+        double[] distances = ws.distances;
+        double[] pathCounts = ws.pathCounts;
+        int[] ranks = ws.ranks;
+        IndexedDaryHeap heap = ws.heap;
+
+        distances[source] = 0;
+        pathCounts[source] = 1;
+        heap.insertOrDecrease(source, 0);
+        int count = 0;
+        while (!heap.isEmpty()) {
+            int v = heap.poll();
+            ranks[v] = count;
+            ws.order[count++] = v;
+            double vDist = distances[v];
+            double vCount = pathCounts[v];
+            for (int a = graph.getFirstArc(v), end = graph.getEndArc(v); a < end; a++) {
+                int w = targets[a];
+                if (ranks[w] >= 0) continue;
+                double newDist = vDist + weights[a];
+                double wDist = distances[w];
+                if (newDist < wDist) {
+                    distances[w] = newDist;
+                    pathCounts[w] = vCount;
+                    heap.insertOrDecrease(w, newDist);
+                } else if (newDist == wDist) {
+                    pathCounts[w] += vCount;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Dijkstra's algorithm on the bucket queue, for integral weights - the same relaxation as {@link #dijkstra}.
+     *
+     * @return Number of settled vertices, which are in <code>ws.order</code> in the order of settling
+     */
+    private int dial(int source, Workspace ws) {
+        int[] targets = graph.getTargets();
+        double[] weights = graph.getWeights();
+        double[] distances = ws.distances;
+        double[] pathCounts = ws.pathCounts;
+        int[] ranks = ws.ranks;
+        BucketQueue buckets = ws.buckets;
+
+        distances[source] = 0;
+        pathCounts[source] = 1;
+        buckets.insertOrDecrease(source, 0);
+        int count = 0;
+        while (!buckets.isEmpty()) {
+            int v = buckets.poll();
+            ranks[v] = count;
+            ws.order[count++] = v;
+            double vDist = distances[v];
+            double vCount = pathCounts[v];
+            for (int a = graph.getFirstArc(v), end = graph.getEndArc(v); a < end; a++) {
+                int w = targets[a];
+                if (ranks[w] >= 0) continue;
+                double newDist = vDist + weights[a];
+                double wDist = distances[w];
+                if (newDist < wDist) {
+                    distances[w] = newDist;
+                    pathCounts[w] = vCount;
+                    buckets.insertOrDecrease(w, newDist);
+                } else if (newDist == wDist) {
+                    pathCounts[w] += vCount;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Breadth-first search for graphs with a single edge weight - the queue is the order of settling.
+     */
+    private int breadthFirst(int source, double weight, Workspace ws) {
+        int[] targets = graph.getTargets();
+        double[] distances = ws.distances;
+        double[] pathCounts = ws.pathCounts;
+        int[] ranks = ws.ranks;
+        int[] queue = ws.order;
+
+        distances[source] = 0;
+        pathCounts[source] = 1;
+        ranks[source] = 0;
+        queue[0] = source;
+        int count = 1;
+        for (int head = 0; head < count; head++) {
+            int v = queue[head];
+            double newDist = distances[v] + weight;
+            double vCount = pathCounts[v];
+            for (int a = graph.getFirstArc(v), end = graph.getEndArc(v); a < end; a++) {
+                int w = targets[a];
+                if (ranks[w] < 0) {
+                    ranks[w] = count;
+                    queue[count++] = w;
+                    distances[w] = newDist;
+                    pathCounts[w] = vCount;
+                } else if (distances[w] == newDist) {
+                    pathCounts[w] += vCount;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Brandes' dependency accumulation, modified so that every vertex but the source depends on itself as an end node.
+     * The vertices are visited in the reverse order of settling and pull the dependencies of their successors.
+     */
+    private void accumulateDependencies(int source, int count, Workspace ws) {
+        int[] targets = graph.getTargets();
+        double[] weights = graph.getWeights();
+        double[] distances = ws.distances;
+        double[] pathCounts = ws.pathCounts;
+        double[] dependencies = ws.dependencies;
+        int[] ranks = ws.ranks;
+
+        for (int i = count - 1; i >= 0; i--) {
+            int v = ws.order[i];
+            double vDist = distances[v];
+            double sigmaV = pathCounts[v];
+            double delta = 0;
+            for (int a = graph.getFirstArc(v), end = graph.getEndArc(v); a < end; a++) {
+                int w = targets[a];
+                if (ranks[w] > i && vDist + weights[a] == distances[w]) {
+                    delta += sigmaV * dependencies[w] / pathCounts[w];
+                }
+            }
+            dependencies[v] = v == source ? delta : delta + 1;
+        }
+    }
+
+    /**
+     * Single-source pass on arrays reused between sources, for callers that consume the distances and path counts of
+     * one source at a time instead of storing all pairs, e.g. on graphs too large for <code>n x n</code> matrices. A
+     * pass takes <code>O(n)</code> memory and must not be shared between threads.
+     */
+    public class SourcePass {
+        private final Workspace ws = new Workspace(graph.size(), bucketWeight);
+        private int count;
+
+        /**
+         * Computes the distances and path counts of the source, replacing those of the previous one.
+         *
+         * @return Number of vertices reachable from the source, including the source
+         */
+        public int run(int source) {
+            long start = System.nanoTime();
+            ws.reset(count);
+            count = settle(source, ws);
+            SOURCE_TIMER.recordSince(start);
+            return count;
+        }
+
+        /**
+         * @return The <code>i</code>-th reachable vertex in the order of settling, i.e. of non-decreasing distances
+         */
+        public int getSettled(int i) {
+            return ws.order[i];
+        }
+
+        /**
+         * @return Position of the vertex in the order of settling, -1 if it is not reachable from the source. A
+         * predecessor of a vertex is a neighbour of lower rank whose distance plus the weight of the arc is the
+         * distance of the vertex.
+         */
+        public int getRank(int v) {
+            return ws.ranks[v];
+        }
+
+        public double getDistance(int v) {
+            return ws.distances[v];
+        }
+
+        public double getPathCount(int v) {
+            return ws.pathCounts[v];
+        }
+    }
+
+    /**
+     * Per-thread arrays of a single-source pass.
+     */
+    protected static class Workspace {
+        final double[] distances;
+        final double[] pathCounts;
+        final double[] dependencies;
+        final int[] ranks;      // position in the order of settling, -1 if not settled
+        final int[] order;
+        final IndexedDaryHeap heap;        // null if the bucket queue is used
+        final BucketQueue buckets;  // null if the weights aren't small integers
+
+        /**
+         * @param bucketWeight Largest edge weight if the bucket queue is used, -1 otherwise
+         */
+        Workspace(int n, int bucketWeight) {
+            distances = new double[n];
+            pathCounts = new double[n];
+            dependencies = new double[n];
+            ranks = new int[n];
+            order = new int[n];
+            heap = bucketWeight >= 0 ? null : new IndexedDaryHeap(n);
+            buckets = bucketWeight >= 0 ? new BucketQueue(n, bucketWeight) : null;
+            Arrays.fill(distances, Double.POSITIVE_INFINITY);
+            Arrays.fill(ranks, -1);
+        }
+
+        /**
+         * Resets the entries of the settled vertices for the next source.
+         */
+        void reset(int count) {
+            for (int i = 0; i < count; i++) {
+                int v = order[i];
+                distances[v] = Double.POSITIVE_INFINITY;
+                pathCounts[v] = 0;
+                dependencies[v] = 0;
+                ranks[v] = -1;
+            }
+        }
+    }
+}
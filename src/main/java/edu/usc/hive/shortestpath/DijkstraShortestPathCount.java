@@ -3,9 +3,13 @@ package edu.usc.hive.shortestpath;
 import edu.uci.ics.jung.algorithms.shortestpath.DijkstraDistance;
 import edu.uci.ics.jung.algorithms.util.MapBinaryHeap;
 import edu.uci.ics.jung.graph.Hypergraph;
+import edu.uci.ics.jung.graph.util.EdgeType;
+import edu.usc.hive.util.Metrics;
+import edu.usc.hive.util.Parallel;
 import org.apache.commons.collections15.Transformer;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Created by IntelliJ IDEA.
@@ -18,18 +22,241 @@ import java.util.*;
  *
  * <b>Acknowledgments:</b>This work was supported by Science Foundation Ireland (SFI) projects
  * Grant No. SFI/08/CE/I1380 (Lion-2) and Grant No. 08/SRC/I1407 (Clique: Graph & Network Analysis Cluster).
+ * <p/>
+ * With dense storage (see {@link PathCountOptions.Storage}), the per-source maps are copied into a primitive
+ * {@link PathCountStore} as soon as a source is finished and then dropped, so the all-pairs state takes three flat
+ * <code>n x n</code> matrices instead of <code>O(n^2)</code> boxed map entries, and the lookups below are array reads.
+ * Predecessors are not kept in that mode, {@link #getPredecessors(Object, Object)} derives them from the distances.
+ * <p/>
+ * The single-source passes are independent of each other (as in Brandes' algorithm), so they can run on several
+ * threads (see {@link PathCountOptions#setParallelism(int)}). Each pass fills its own per-source data, which is
+ * published when all passes are done.
+ * <p/>
+ * With dense storage the passes run by default on a compressed sparse row copy of the graph
+ * ({@link PathCountOptions.Engine#CSR}), which avoids the maps, the boxing and the transformer lookups of the JUNG
+ * traversal below.
+ * <p/>
+ * When edges are inserted, deleted or reweighted, {@link #update(Collection, int)} recomputes only the sources whose
+ * shortest path DAG the change can alter (see {@link EdgeUpdate#affects(double, double)}); the statistics of all other
+ * sources stay valid as they are.
+ * <p/>
+ * Sums of real weights are rounded, so paths of the same length can end up with distances differing in the last bits
+ * and are then not counted as shortest paths. With a weight resolution (see
+ * {@link PathCountOptions#setWeightResolution(double)}) the weights are counted in whole units and all distances are
+ * exact.
  *
  * @see edu.uci.ics.jung.algorithms.shortestpath.DijkstraShortestPath
  */
 public class DijkstraShortestPathCount<V, E> extends DijkstraDistance<V, E> {
 
+    private static final Metrics.Timer SOURCE_TIMER = Metrics.get().timer(Metrics.PATHS_SOURCE);
+
+    protected VertexIndex<V> index;     // dense storage only
+    protected PathCountStore store;     // dense storage only
+    protected PathCountOptions.Engine engine = PathCountOptions.Engine.CSR;  // dense storage only
+    protected double weightResolution;  // 0 if the weights are not quantized
+
     public DijkstraShortestPathCount(Hypergraph<V, E> g, Transformer<E, ? extends Number> nev, boolean cached) {
-        super(g, nev, cached);
+        this(g, nev, cached, new PathCountOptions().setStorage(PathCountOptions.Storage.MAP));
+    }
+
+    public DijkstraShortestPathCount(Hypergraph<V, E> g, Transformer<E, ? extends Number> nev, boolean cached,
+                                     PathCountOptions options) {
+        super(g, quantize(nev, options.getWeightResolution()), cached);
+        engine = options.getEngine();
+        weightResolution = options.getWeightResolution();
+        if (options.getStorage() == PathCountOptions.Storage.PACKED && g.getEdgeCount(EdgeType.DIRECTED) > 0)
+            throw new IllegalArgumentException("Packed storage needs an undirected graph");
+        if (options.getStorage() == PathCountOptions.Storage.PACKED && weightResolution == 0 && !isIntegral(g, nev))
+            throw new IllegalArgumentException("Packed storage needs integral weights or a weight resolution");
+        if (options.getStorage() != PathCountOptions.Storage.MAP) {
+            index = new VertexIndex<V>(g.getVertices());
+            if (options.getStorage() == PathCountOptions.Storage.OFF_HEAP) {
+                store = new OffHeapPathCountStore(index.size());
+            } else if (options.getStorage() == PathCountOptions.Storage.PACKED) {
+                store = new PackedPathCountStore(index.size());
+            } else {
+                store = PathCountStore.create(index.size());
+            }
+        }
         // compute all paths during the instantiation - should speed things little bit up, because for
         // group betweenness centrality, we need to compute all of them anyway
-        for (V source : g.getVertices()) {
-            singleSourceShortestPath(source, g.getVertices(), Integer.MAX_VALUE);
+        if (store != null && options.getEngine() == PathCountOptions.Engine.CSR) {
+            // this.nev: the weights in units of the resolution
+            new CsrShortestPathCount(CsrGraph.create(g, this.nev, index)).computeAll(store, options.getParallelism());
+            return;
+        }
+        final List<V> sources = new ArrayList<V>(g.getVertices());
+        if (options.getParallelism() > 1) {
+            // sources are independent: each pass works on its own SourcePathData and, with dense storage, on its own
+            // row of the store; only the registration of the per-source data needs a concurrent map
+            sourceMap = new ConcurrentHashMap<V, SourceData>();
+        }
+        Parallel.forEachRange(sources.size(), options.getParallelism(), new Parallel.RangeTask() {
+            public void run(int from, int to) {
+                for (int i = from; i < to; i++) {
+                    computeSource(sources.get(i));
+                }
+            }
+        });
+    }
+
+    /**
+     * @return True if all weights are whole numbers, whose sums are exact in any order
+     */
+    private static <V, E> boolean isIntegral(Hypergraph<V, E> g, Transformer<E, ? extends Number> nev) {
+        for (E e : g.getEdges()) {
+            double w = nev.transform(e).doubleValue();
+            if (w != Math.rint(w) || Math.abs(w) > PathCountOptions.MAX_UNITS) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return Weights in units of the resolution, or the weights themselves without a resolution
+     */
+    public static <E> Transformer<E, ? extends Number> quantize(final Transformer<E, ? extends Number> nev,
+                                                                final double resolution) {
+        if (resolution == 0) return nev;
+        return new Transformer<E, Double>() {
+            public Double transform(E e) {
+                return PathCountOptions.quantize(nev.transform(e).doubleValue(), resolution);
+            }
+        };
+    }
+
+    /**
+     * Wraps all-pairs statistics computed earlier, e.g. loaded from a snapshot, instead of computing them.
+     *
+     * @param index Dense indices of exactly the vertices of the graph
+     * @param store Statistics of the graph with rows and columns in the order of the index
+     * @throws IllegalArgumentException if the index or the store doesn't match the graph
+     */
+    public DijkstraShortestPathCount(Hypergraph<V, E> g, Transformer<E, ? extends Number> nev, VertexIndex<V> index,
+                                     PathCountStore store) {
+        super(g, nev, true);
+        if (index.size() != g.getVertexCount() || store.size() != index.size())
+            throw new IllegalArgumentException("Precomputed statistics of " + store.size() + " vertices don't match "
+                    + "graph of " + g.getVertexCount() + " vertices");
+        for (V v : g.getVertices()) {
+            index.indexOf(v);
+        }
+        this.index = index;
+        this.store = store;
+    }
+
+    /**
+     * Brings the statistics up to date after edges of the graph were inserted, deleted or reweighted. The changes
+     * have to be applied to the graph and to the weights before; the set of vertices must not change.
+     *
+     * @param updates     Changes of the edges since the statistics were computed
+     * @param parallelism Number of threads recomputing the affected sources
+     * @return The recomputed sources
+     * @see #getAffectedSources(Collection)
+     */
+    public List<V> update(Collection<EdgeUpdate<V>> updates, int parallelism) {
+        List<V> affected = getAffectedSources(updates);
+        recomputeSources(affected, parallelism);
+        return affected;
+    }
+
+    /**
+     * Finds the sources whose statistics the changes of the edges alter, on the statistics before the changes.
+     *
+     * @param updates Changes of the edges
+     * @return Sources to recompute
+     * @throws IllegalArgumentException if an endpoint of a changed edge is not part of the graph
+     */
+    public List<V> getAffectedSources(Collection<EdgeUpdate<V>> updates) {
+        for (EdgeUpdate<V> update : updates) {
+            if (!g.containsVertex(update.getFirst()) || !g.containsVertex(update.getSecond()))
+                throw new IllegalArgumentException("Endpoints of " + update + " are not part of graph " + g);
+        }
+        List<V> affected = new ArrayList<V>();
+        for (V s : store != null ? index.getVertices() : g.getVertices()) {
+            for (EdgeUpdate<V> update : updates) {
+                EdgeUpdate<V> change = update.quantize(weightResolution);     // distances are in the same units
+                if (change.affects(getDistanceOrInfinity(s, update.getFirst()),
+                        getDistanceOrInfinity(s, update.getSecond()))) {
+                    affected.add(s);
+                    break;
+                }
+            }
+        }
+        return affected;
+    }
+
+    /**
+     * Recomputes the statistics of the sources on the current graph and weights.
+     *
+     * @param sources     Sources to recompute
+     * @param parallelism Number of threads
+     * @throws IllegalStateException if the dense statistics are read-only, e.g. mapped from a snapshot
+     */
+    public void recomputeSources(Collection<V> sources, int parallelism) {
+        if (sources.isEmpty()) return;
+        if (store != null && store.isReadOnly())
+            throw new IllegalStateException("Read-only statistics can't be updated");
+        if (store != null && engine == PathCountOptions.Engine.CSR) {
+            int[] rows = new int[sources.size()];
+            int i = 0;
+            for (V s : sources) {
+                rows[i++] = index.indexOf(s);
+            }
+            new CsrShortestPathCount(CsrGraph.create(g, nev, index)).compute(store, rows, parallelism);
+            return;
         }
+        final List<V> list = new ArrayList<V>(sources);
+        if (parallelism > 1 && !(sourceMap instanceof ConcurrentHashMap)) {
+            sourceMap = new ConcurrentHashMap<V, SourceData>(sourceMap);
+        }
+        for (V s : list) {
+            sourceMap.remove(s);
+        }
+        Parallel.forEachRange(list.size(), parallelism, new Parallel.RangeTask() {
+            public void run(int from, int to) {
+                for (int i = from; i < to; i++) {
+                    computeSource(list.get(i));
+                }
+            }
+        });
+    }
+
+    private double getDistanceOrInfinity(V source, V target) {
+        Double d = getDistanceAsDouble(source, target);
+        return d == null ? Double.POSITIVE_INFINITY : d;
+    }
+
+    /**
+     * Runs the single-source pass of the source and, with dense storage, moves its results into the store.
+     */
+    protected void computeSource(V source) {
+        long start = System.nanoTime();
+        singleSourceShortestPath(source, g.getVertices(), Integer.MAX_VALUE);
+        if (store != null) {
+            storeSourceData(source);
+        }
+        SOURCE_TIMER.recordSince(start);
+    }
+
+    /**
+     * Copies the results of a finished source into the dense store and releases its maps.
+     */
+    @SuppressWarnings("unchecked")
+    protected void storeSourceData(V source) {
+        SourcePathData spd = (SourcePathData) sourceMap.remove(source);
+        int s = index.indexOf(source);
+        store.clearRow(s);
+        for (Map.Entry<V, Number> e : spd.getDistances().entrySet()) {
+            int t = index.indexOf(e.getKey());
+            if (t < s && store.isSymmetric()) continue;     // written by the pass of t
+            store.setDistance(s, t, e.getValue().doubleValue());
+            store.setPathCount(s, t, spd.getPathCount(e.getKey()));
+        }
+        for (Map.Entry<V, Double> e : spd.partialDependencies.entrySet()) {
+            store.setPartialDependency(s, index.indexOf(e.getKey()), e.getValue());
+        }
+        store.setAccessibleVerticesCount(s, spd.getAccessibleVerticesCount());
     }
 
     /**
@@ -134,7 +361,7 @@ public class DijkstraShortestPathCount<V, E> extends DijkstraDistance<V, E> {
         Map<V, Double> partialDependencies = sd.partialDependencies;
         for (V w : visitedVertices) {
             if (w.equals(source)) continue; // predecessors of a source node are not defined
-            Set<V> predecessors = getPredecessors(source, w);
+            Set<V> predecessors = sd.getPredecessors(w);
             Double deltaW = partialDependencies.get(w);
             if (deltaW == null) {
                 deltaW = source.equals(w) ? 0d : 1d;
@@ -143,8 +370,8 @@ public class DijkstraShortestPathCount<V, E> extends DijkstraDistance<V, E> {
                 partialDependencies.put(w, deltaW + (source.equals(w) ? 0d : 1d));
             }
             for (V v : predecessors) {
-                long sigmaV = getShortestPathCount(source, v);
-                long sigmaW = getShortestPathCount(source, w);
+                double sigmaV = sd.getPathCount(v);
+                double sigmaW = sd.getPathCount(w);
                 double deltaV = 0;
                 if (partialDependencies.containsKey(v)) {
                     deltaV = partialDependencies.get(v);
@@ -152,13 +379,22 @@ public class DijkstraShortestPathCount<V, E> extends DijkstraDistance<V, E> {
                 if (partialDependencies.containsKey(w)) {
                     deltaW = partialDependencies.get(w);
                 }
-                partialDependencies.put(v, deltaV + (((double) sigmaV) * deltaW / sigmaW));
+                partialDependencies.put(v, deltaV + (sigmaV * deltaW / sigmaW));
             }
         }
 
         return sd.getDistances();
     }
 
+    @Override
+    public Number getDistance(V source, V target) {
+        if (store == null) {
+            return super.getDistance(source, target);
+        }
+        double d = store.getDistance(index.indexOf(source), index.indexOf(target));
+        return Double.isInfinite(d) ? null : d;
+    }
+
     public Long getDistanceAsLong(V s, V t) {
         Number d = getDistance(s, t);
         if (d == null) {
@@ -169,6 +405,10 @@ public class DijkstraShortestPathCount<V, E> extends DijkstraDistance<V, E> {
     }
 
     public Double getDistanceAsDouble(V s, V t) {
+        if (store != null) {
+            double d = store.getDistance(index.indexOf(s), index.indexOf(t));
+            return Double.isInfinite(d) ? null : d;
+        }
         Number d = getDistance(s, t);
         if (d == null) {
             return null;
@@ -186,16 +426,19 @@ public class DijkstraShortestPathCount<V, E> extends DijkstraDistance<V, E> {
     }
 
     @SuppressWarnings("unchecked")
-    public long getShortestPathCount(V source, V target) {
+    public double getShortestPathCount(V source, V target) {
         if (!(g.containsVertex(source) && g.containsVertex(target)))
             throw new IllegalArgumentException("Source or target are not part of graph " + g);
+        if (store != null) {
+            return store.getPathCount(index.indexOf(source), index.indexOf(target));
+        }
 //        singleSourceShortestPath(source, g.getVertices(), Integer.MAX_VALUE); // run Dijkstra algorithm
         SourcePathData spd = (SourcePathData) sourceMap.get(source);
         return spd.getPathCount(target);
     }
 
     @SuppressWarnings("unchecked")
-    public long getShortestPathCount(V source, V intermediary, V target) {
+    public double getShortestPathCount(V source, V intermediary, V target) {
         if (!(g.containsVertex(source) && g.containsVertex(intermediary) && g.containsVertex(target))) {
             throw new IllegalArgumentException("Source, intermediary, or target are not part of graph " + g);
         }
@@ -205,6 +448,14 @@ public class DijkstraShortestPathCount<V, E> extends DijkstraDistance<V, E> {
         * 'Brandes, U. (2001): A faster algorithm for betweenneess centrality'
         */
         // intermediary has to be on the shortest path and if it equals source or target it's 0 (by definition)
+        if (store != null) {
+            int s = index.indexOf(source), i = index.indexOf(intermediary), t = index.indexOf(target);
+            double s2t = store.getDistance(s, t), s2i = store.getDistance(s, i), i2t = store.getDistance(i, t);
+            if (Double.isInfinite(s2t) || Double.isInfinite(s2i) || Double.isInfinite(i2t) || s2t < s2i + i2t) {
+                return 0;
+            }
+            return store.getPathCount(s, i) * store.getPathCount(i, t);
+        }
         Number source2target = getDistance(source, target);
         Number source2intermediary = getDistance(source, intermediary);
         Number intermediary2target = getDistance(intermediary, target);
@@ -218,18 +469,28 @@ public class DijkstraShortestPathCount<V, E> extends DijkstraDistance<V, E> {
         }
         SourcePathData spdSource = (SourcePathData) sourceMap.get(source);
         SourcePathData spdIntermediary = (SourcePathData) sourceMap.get(intermediary);
-        long sigmaSI = spdSource.getPathCount(intermediary);
-        long sigmaIT = spdIntermediary.getPathCount(target);
+        double sigmaSI = spdSource.getPathCount(intermediary);
+        double sigmaIT = spdIntermediary.getPathCount(target);
         return sigmaSI * sigmaIT;
     }
 
     @SuppressWarnings("unchecked")
-    public long getShortestPathCount(V source) {
+    public double getShortestPathCount(V source) {
         if (!(g.containsVertex(source))) {
             throw new IllegalArgumentException("Source is not part of graph " + g);
         }
+        if (store != null) {
+            int s = index.indexOf(source);
+            double pathCount = 0;
+            for (int t = 0; t < index.size(); t++) {
+                if (t != s) {
+                    pathCount += store.getPathCount(s, t);
+                }
+            }
+            return pathCount;
+        }
         SourcePathData spdSource = (SourcePathData) sourceMap.get(source);
-        long pathCount = 0;
+        double pathCount = 0;
         for (V t : g.getVertices()) {
             if (!t.equals(source)) {
                 pathCount += spdSource.getPathCount(t);
@@ -238,27 +499,58 @@ public class DijkstraShortestPathCount<V, E> extends DijkstraDistance<V, E> {
         return pathCount;
     }
 
+    /**
+     * Returns the predecessors of <code>target</code> on the shortest paths from <code>source</code>. With dense
+     * storage they are not kept but derived from the distances: a neighbour <code>u</code> is a predecessor if
+     * <code>d(source, u) + w(u, target) == d(source, target)</code>, the same test that counted the paths.
+     *
+     * @return Predecessors of the target; with dense storage empty for the source itself and for unreachable targets
+     */
     @SuppressWarnings("unchecked")
     public Set<V> getPredecessors(V source, V target) {
         if (!g.containsVertex(target) || !g.containsVertex(source)) {
             throw new IllegalArgumentException("Vertices " + target + " or " + source + " are not part of graph " + g);
         }
+        if (store != null) {
+            return getPredecessorsFromStore(source, target);
+        }
         SourcePathData spd = (SourcePathData) sourceMap.get(source);
         return spd.getPredecessors(target);
     }
 
+    private Set<V> getPredecessorsFromStore(V source, V target) {
+        Set<V> predecessors = new HashSet<V>();
+        int s = index.indexOf(source);
+        double distance = store.getDistance(s, index.indexOf(target));
+        if (source.equals(target) || Double.isInfinite(distance)) {
+            return predecessors;
+        }
+        for (E edge : g.getInEdges(target)) {
+            for (V u : g.getIncidentVertices(edge)) {
+                if (!u.equals(target)
+                        && store.getDistance(s, index.indexOf(u)) + nev.transform(edge).doubleValue() == distance) {
+                    predecessors.add(u);
+                }
+            }
+        }
+        return predecessors;
+    }
+
     @SuppressWarnings("unchecked")
     public double getPartialDependency(V source, V intermediary) {
         if (!g.containsVertex(source) || !g.containsVertex(intermediary)) {
             throw new IllegalArgumentException("Vertices " + intermediary + " or " + source + " are not part of graph " + g);
         }
+        if (store != null) {
+            return store.getPartialDependency(index.indexOf(source), index.indexOf(intermediary));
+        }
         SourcePathData spd = (SourcePathData) sourceMap.get(source);
         return spd.getPartialDependency(intermediary);
     }
 
     public boolean isConnected() {
         for (V s : g.getVertices()) {
-            if (getSPD(s).getAccessibleVerticesCount() < g.getVertexCount()) {
+            if (getAccessibleVerticesCount(s) < g.getVertexCount()) {
                 return false;
             }
         }
@@ -266,9 +558,26 @@ public class DijkstraShortestPathCount<V, E> extends DijkstraDistance<V, E> {
     }
 
     public int getAccessibleVerticesCount(V s) {
+        if (store != null) {
+            return store.getAccessibleVerticesCount(index.indexOf(s));
+        }
         return getSPD(s).getAccessibleVerticesCount();
     }
 
+    /**
+     * @return Dense indices of the vertices, or null with map storage
+     */
+    public VertexIndex<V> getVertexIndex() {
+        return index;
+    }
+
+    /**
+     * @return Primitive all-pairs statistics, or null with map storage
+     */
+    public PathCountStore getStore() {
+        return store;
+    }
+
     @SuppressWarnings("unchecked")
     private SourcePathData getSPD(V s) {
         return (SourcePathData) sourceMap.get(s);
@@ -289,15 +598,15 @@ public class DijkstraShortestPathCount<V, E> extends DijkstraDistance<V, E> {
     protected class SourcePathData extends SourceData {
         protected Map<V, Set<E>> tentativeIncomingEdges;
         protected LinkedHashMap<V, Set<E>> incomingEdges;
-        protected Map<V, Long> shortestPathCount;
+        protected Map<V, Double> shortestPathCount;     // doubles, see PathCountStore
         protected Map<V, Double> partialDependencies = new HashMap<V, Double>();
 
         protected SourcePathData(V source) {
             super(source);
             incomingEdges = new LinkedHashMap<V, Set<E>>();
             tentativeIncomingEdges = new HashMap<V, Set<E>>();
-            shortestPathCount = new HashMap<V, Long>();
-            shortestPathCount.put(source, 1l);  // by definition
+            shortestPathCount = new HashMap<V, Double>();
+            shortestPathCount.put(source, 1d);  // by definition
         }
 
         @Override
@@ -327,7 +636,7 @@ public class DijkstraShortestPathCount<V, E> extends DijkstraDistance<V, E> {
 
         public void countPaths(V currentNode) {
             Set<V> predecessors = getPredecessors(currentNode);
-            long pathCount = 0;
+            double pathCount = 0;
             for (V predecessor : predecessors) {
                 pathCount += shortestPathCount.get(predecessor);
             }
@@ -373,7 +682,7 @@ public class DijkstraShortestPathCount<V, E> extends DijkstraDistance<V, E> {
             return this.unknownVertices;
         }
 
-        public long getPathCount(V target) {
+        public double getPathCount(V target) {
             if (shortestPathCount.containsKey(target)) {
                 return shortestPathCount.get(target);
             } else {
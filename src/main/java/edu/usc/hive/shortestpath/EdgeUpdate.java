@@ -0,0 +1,92 @@
+package edu.usc.hive.shortestpath;
+
+/**
+ * Change of a single edge of a graph: an inserted or deleted edge, or a new weight. The change is applied to the graph
+ * and to its weights by the caller; {@link DijkstraShortestPathCount#update(java.util.Collection, int)} then only needs
+ * the endpoints of the edge and its weight before and after. A missing edge has an infinite weight.
+ */
+public class EdgeUpdate<V> {
+
+    private final V first;
+    private final V second;
+    private final double oldWeight;
+    private final double newWeight;
+
+    private EdgeUpdate(V first, V second, double oldWeight, double newWeight) {
+        if (oldWeight < 0 || newWeight < 0 || Double.isNaN(oldWeight) || Double.isNaN(newWeight))
+            throw new IllegalArgumentException("Edges weights must be non-negative");
+        this.first = first;
+        this.second = second;
+        this.oldWeight = oldWeight;
+        this.newWeight = newWeight;
+    }
+
+    public static <V> EdgeUpdate<V> inserted(V first, V second, double weight) {
+        return new EdgeUpdate<V>(first, second, Double.POSITIVE_INFINITY, weight);
+    }
+
+    public static <V> EdgeUpdate<V> deleted(V first, V second, double weight) {
+        return new EdgeUpdate<V>(first, second, weight, Double.POSITIVE_INFINITY);
+    }
+
+    public static <V> EdgeUpdate<V> reweighted(V first, V second, double oldWeight, double newWeight) {
+        return new EdgeUpdate<V>(first, second, oldWeight, newWeight);
+    }
+
+    /**
+     * @return This change with both weights in units of the resolution (see
+     * {@link PathCountOptions#setWeightResolution(double)})
+     */
+    public EdgeUpdate<V> quantize(double resolution) {
+        if (resolution == 0) return this;
+        return new EdgeUpdate<V>(first, second, PathCountOptions.quantize(oldWeight, resolution),
+                PathCountOptions.quantize(newWeight, resolution));
+    }
+
+    public V getFirst() {
+        return first;
+    }
+
+    public V getSecond() {
+        return second;
+    }
+
+    /**
+     * @return Weight before the change, infinite for an inserted edge
+     */
+    public double getOldWeight() {
+        return oldWeight;
+    }
+
+    /**
+     * @return Weight after the change, infinite for a deleted edge
+     */
+    public double getNewWeight() {
+        return newWeight;
+    }
+
+    /**
+     * Tests whether the change can alter the shortest paths from a source, given the distances from the source to
+     * the endpoints before the change. A shorter edge matters if it yields a path to one endpoint through the other
+     * that is at most as long as the current one; a longer or deleted edge matters if it was on a shortest path. If no
+     * change of a batch matters for a source, none of its distances, path counts and dependencies change.
+     *
+     * @param toFirst  Distance from the source to the first endpoint before the change
+     * @param toSecond Distance from the source to the second endpoint before the change
+     */
+    public boolean affects(double toFirst, double toSecond) {
+        if (newWeight < oldWeight) {
+            return !Double.isInfinite(toFirst) && toFirst + newWeight <= toSecond
+                    || !Double.isInfinite(toSecond) && toSecond + newWeight <= toFirst;
+        } else if (newWeight > oldWeight) {
+            return !Double.isInfinite(toFirst) && toFirst + oldWeight == toSecond
+                    || !Double.isInfinite(toSecond) && toSecond + oldWeight == toFirst;
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "EdgeUpdate{" + first + " - " + second + ": " + oldWeight + " -> " + newWeight + "}";
+    }
+}
@@ -0,0 +1,138 @@
+package edu.usc.hive.shortestpath;
+
+import java.util.Arrays;
+
+/**
+ * Primitive min-priority queue of the vertex indices <code>0..n-1</code> keyed by doubles, laid out as an implicit
+ * d-ary tree. The position of every queued vertex is tracked, so that its key can be decreased in place. A wider tree
+ * is shallower, which makes the frequent decrease-key operations cheaper at the price of more comparisons per poll.
+ */
+public class IndexedDaryHeap {
+
+    public static final int DEFAULT_ARITY = 4;
+
+    private final int arity;
+    private final int[] heap;       // vertices in the tree order
+    private final int[] positions;  // position of a vertex in the heap, -1 if it's not queued
+    private final double[] keys;
+    private int size;
+
+    public IndexedDaryHeap(int n) {
+        this(n, DEFAULT_ARITY);
+    }
+
+    public IndexedDaryHeap(int n, int arity) {
+        if (arity < 2)
+            throw new IllegalArgumentException("Arity must be at least 2");
+        this.arity = arity;
+        this.heap = new int[n];
+        this.positions = new int[n];
+        this.keys = new double[n];
+        Arrays.fill(positions, -1);
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean contains(int v) {
+        return positions[v] >= 0;
+    }
+
+    /**
+     * @return Key of a queued vertex
+     */
+    public double getKey(int v) {
+        return keys[v];
+    }
+
+    /**
+     * Queues the vertex with the key, or lowers its key if it is queued already with a larger one.
+     */
+    public void insertOrDecrease(int v, double key) {
+        int p = positions[v];
+        if (p < 0) {
+            p = size++;
+            heap[p] = v;
+            positions[v] = p;
+        } else if (key >= keys[v]) {
+            return;
+        }
+        keys[v] = key;
+        siftUp(p);
+    }
+
+    /**
+     * Removes the vertex with the smallest key.
+     *
+     * @return The removed vertex
+     */
+    public int poll() {
+        if (size == 0)
+            throw new IllegalStateException("Heap is empty");
+        int min = heap[0];
+        positions[min] = -1;
+        if (--size > 0) {
+            int last = heap[size];
+            heap[0] = last;
+            positions[last] = 0;
+            siftDown(0);
+        }
+        return min;
+    }
+
+    /**
+     * Removes all queued vertices.
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            positions[heap[i]] = -1;
+        }
+        size = 0;
+    }
+
+    private void siftUp(int p) {
+        int v = heap[p];
+        double key = keys[v];
+        while (p > 0) {
+            int parent = (p - 1) / arity;
+            int u = heap[parent];
+            if (keys[u] <= key) break;
+            heap[p] = u;
+            positions[u] = p;
+            p = parent;
+        }
+        heap[p] = v;
+        positions[v] = p;
+    }
+
+    private void siftDown(int p) {
+        int v = heap[p];
+        double key = keys[v];
+        while (true) {
+            int first = p * arity + 1;
+            if (first >= size) break;
+            int last = Math.min(first + arity, size);
+            int min = first;
+            double minKey = keys[heap[first]];
+            for (int c = first + 1; c < last; c++) {
+                double k = keys[heap[c]];
+                if (k < minKey) {
+                    min = c;
+                    minKey = k;
+                }
+            }
+            if (minKey >= key) break;
+            int u = heap[min];
+            heap[p] = u;
+            positions[u] = p;
+            p = min;
+        }
+        heap[p] = v;
+        positions[v] = p;
+    }
+}
@@ -0,0 +1,128 @@
+package edu.usc.hive.shortestpath;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * {@link PathCountStore} backed by direct byte buffers, for graphs whose <code>n^2</code> matrices don't fit into Java
+ * arrays or should be kept out of the garbage collected heap. Each matrix is split into pages of
+ * <code>2^PAGE_BITS</code> elements, because a single buffer is limited to <code>2^31</code> bytes. The pages can also
+ * be mapped from a file (see {@link #map(FileChannel, long, int, ByteOrder)}).
+ */
+public class OffHeapPathCountStore extends PathCountStore {
+
+    private static final int PAGE_BITS = 27;  // 2^27 eight-byte elements = 1 GiB per page
+    private static final long PAGE_MASK = (1L << PAGE_BITS) - 1;
+
+    protected final DoubleBuffer[] distances;
+    protected final DoubleBuffer[] pathCounts;
+    protected final DoubleBuffer[] partialDependencies;
+    private final boolean readOnly;
+
+    public OffHeapPathCountStore(int n) {
+        super(n);
+        long elements = (long) n * n;
+        int pages = (int) ((elements + PAGE_MASK) >>> PAGE_BITS);
+        distances = new DoubleBuffer[pages];
+        pathCounts = new DoubleBuffer[pages];
+        partialDependencies = new DoubleBuffer[pages];
+        for (int p = 0; p < pages; p++) {
+            int pageSize = (int) Math.min(PAGE_MASK + 1, elements - ((long) p << PAGE_BITS));
+            distances[p] = allocate(pageSize).asDoubleBuffer();
+            pathCounts[p] = allocate(pageSize).asDoubleBuffer();
+            partialDependencies[p] = allocate(pageSize).asDoubleBuffer();
+            for (int i = 0; i < pageSize; i++) {
+                distances[p].put(i, Double.POSITIVE_INFINITY);
+            }
+        }
+        readOnly = false;
+    }
+
+    private OffHeapPathCountStore(int n, DoubleBuffer[] distances, DoubleBuffer[] pathCounts,
+                                  DoubleBuffer[] partialDependencies) {
+        super(n);
+        this.distances = distances;
+        this.pathCounts = pathCounts;
+        this.partialDependencies = partialDependencies;
+        this.readOnly = true;
+    }
+
+    /**
+     * Maps a store from a file holding the <code>n x n</code> row-major matrices of distances, path counts and
+     * partial dependencies one after another. The mapping is read-only, so are the matrices of the store.
+     * Accessible vertex counts are not part of the mapped region and have to be set separately.
+     *
+     * @param channel  Channel of the file
+     * @param position Offset of the distance matrix in the file
+     * @param n        Number of vertices
+     * @param order    Byte order of the file
+     */
+    public static OffHeapPathCountStore map(FileChannel channel, long position, int n, ByteOrder order)
+            throws IOException {
+        long elements = (long) n * n;
+        int pages = (int) ((elements + PAGE_MASK) >>> PAGE_BITS);
+        DoubleBuffer[] distances = new DoubleBuffer[pages];
+        DoubleBuffer[] pathCounts = new DoubleBuffer[pages];
+        DoubleBuffer[] partialDependencies = new DoubleBuffer[pages];
+        for (int p = 0; p < pages; p++) {
+            long pageStart = (long) p << PAGE_BITS;
+            long pageBytes = Math.min(PAGE_MASK + 1, elements - pageStart) * 8;
+            long offset = position + pageStart * 8;
+            distances[p] = channel.map(FileChannel.MapMode.READ_ONLY, offset, pageBytes)
+                    .order(order).asDoubleBuffer();
+            pathCounts[p] = channel.map(FileChannel.MapMode.READ_ONLY, offset + elements * 8, pageBytes)
+                    .order(order).asDoubleBuffer();
+            partialDependencies[p] = channel.map(FileChannel.MapMode.READ_ONLY, offset + elements * 16, pageBytes)
+                    .order(order).asDoubleBuffer();
+        }
+        return new OffHeapPathCountStore(n, distances, pathCounts, partialDependencies);
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    private static ByteBuffer allocate(int elements) {
+        return ByteBuffer.allocateDirect(elements * 8).order(ByteOrder.nativeOrder());
+    }
+
+    @Override
+    public double getDistance(int source, int target) {
+        long o = offset(source, target);
+        return distances[(int) (o >>> PAGE_BITS)].get((int) (o & PAGE_MASK));
+    }
+
+    @Override
+    public double getPathCount(int source, int target) {
+        long o = offset(source, target);
+        return pathCounts[(int) (o >>> PAGE_BITS)].get((int) (o & PAGE_MASK));
+    }
+
+    @Override
+    public double getPartialDependency(int source, int intermediary) {
+        long o = offset(source, intermediary);
+        return partialDependencies[(int) (o >>> PAGE_BITS)].get((int) (o & PAGE_MASK));
+    }
+
+    @Override
+    public void setDistance(int source, int target, double distance) {
+        long o = offset(source, target);
+        distances[(int) (o >>> PAGE_BITS)].put((int) (o & PAGE_MASK), distance);
+    }
+
+    @Override
+    public void setPathCount(int source, int target, double count) {
+        long o = offset(source, target);
+        pathCounts[(int) (o >>> PAGE_BITS)].put((int) (o & PAGE_MASK), count);
+    }
+
+    @Override
+    public void setPartialDependency(int source, int intermediary, double dependency) {
+        long o = offset(source, intermediary);
+        partialDependencies[(int) (o >>> PAGE_BITS)].put((int) (o & PAGE_MASK), dependency);
+    }
+}
@@ -0,0 +1,93 @@
+package edu.usc.hive.shortestpath;
+
+import java.util.Arrays;
+
+/**
+ * {@link PathCountStore} of an undirected graph that keeps the symmetric distance and path count matrices as packed
+ * upper triangles: row <code>s</code> holds the entries of the targets <code>t >= s</code> only, and
+ * <code>(s, t)</code> with <code>t < s</code> is read from row <code>t</code>. The partial dependencies are not
+ * symmetric and keep full rows. The store takes <code>2n^2</code> instead of <code>3n^2</code> values and, as every
+ * row is an array of its own, fits graphs whose <code>n^2</code> matrices exceed the length of a Java array on the
+ * heap.
+ * <p/>
+ * A source owns the entries of its triangle row, so writers skip the targets below the source (see
+ * {@link #isSymmetric()}): their entries are written by the passes of those targets, which find the same distances
+ * and path counts. With real weights, this holds exactly only for quantized ones (see
+ * {@link PathCountOptions#setWeightResolution(double)}): the two passes sum the weights of a path in opposite order.
+ * {@link DijkstraShortestPathCount} therefore rejects packed storage of weights that are neither integral nor
+ * quantized.
+ */
+public class PackedPathCountStore extends PathCountStore {
+
+    protected final double[][] distances;
+    protected final double[][] pathCounts;
+    protected final double[][] partialDependencies;
+
+    public PackedPathCountStore(int n) {
+        super(n);
+        distances = new double[n][];
+        pathCounts = new double[n][];
+        partialDependencies = new double[n][];
+        for (int s = 0; s < n; s++) {
+            distances[s] = new double[n - s];
+            pathCounts[s] = new double[n - s];
+            partialDependencies[s] = new double[n];
+            Arrays.fill(distances[s], Double.POSITIVE_INFINITY);
+        }
+    }
+
+    @Override
+    public boolean isSymmetric() {
+        return true;
+    }
+
+    @Override
+    public double getDistance(int source, int target) {
+        return source <= target ? distances[source][target - source] : distances[target][source - target];
+    }
+
+    @Override
+    public double getPathCount(int source, int target) {
+        return source <= target ? pathCounts[source][target - source] : pathCounts[target][source - target];
+    }
+
+    @Override
+    public double getPartialDependency(int source, int intermediary) {
+        return partialDependencies[source][intermediary];
+    }
+
+    @Override
+    public void setDistance(int source, int target, double distance) {
+        if (source <= target) {
+            distances[source][target - source] = distance;
+        } else {
+            distances[target][source - target] = distance;
+        }
+    }
+
+    @Override
+    public void setPathCount(int source, int target, double count) {
+        if (source <= target) {
+            pathCounts[source][target - source] = count;
+        } else {
+            pathCounts[target][source - target] = count;
+        }
+    }
+
+    @Override
+    public void setPartialDependency(int source, int intermediary, double dependency) {
+        partialDependencies[source][intermediary] = dependency;
+    }
+
+    /**
+     * Resets the triangle row and the dependencies of the source; the entries of the targets below the source belong
+     * to their rows.
+     */
+    @Override
+    public void clearRow(int source) {
+        Arrays.fill(distances[source], Double.POSITIVE_INFINITY);
+        Arrays.fill(pathCounts[source], 0);
+        Arrays.fill(partialDependencies[source], 0);
+        accessibleVertices[source] = 0;
+    }
+}
@@ -0,0 +1,135 @@
+package edu.usc.hive.shortestpath;
+
+/**
+ * Settings of the all-pairs shortest path counting in {@link DijkstraShortestPathCount}.
+ */
+public class PathCountOptions {
+
+    /**
+     * Largest number of units a quantized weight may have: integers up to <code>2^53</code> are exact doubles.
+     */
+    public static final double MAX_UNITS = 9007199254740992d;
+
+    /**
+     * How the all-pairs statistics are kept once they are computed.
+     */
+    public enum Storage {
+        /**
+         * Per-source hash maps of boxed values, including the predecessors of every vertex.
+         */
+        MAP,
+        /**
+         * Primitive matrices indexed by dense vertex indices - on the heap if they fit into arrays, off the heap
+         * otherwise. Predecessors are not kept but derived from the distances.
+         */
+        DENSE,
+        /**
+         * Primitive matrices in direct buffers off the heap. Predecessors are not kept but derived from the distances.
+         */
+        OFF_HEAP,
+        /**
+         * Primitive matrices on the heap with the symmetric distances and path counts of an undirected graph packed
+         * into upper triangles (see {@link PackedPathCountStore}) - two thirds of the memory of {@link #DENSE}.
+         * Predecessors are not kept but derived from the distances. The distances of both directions of a pair have
+         * to be equal bit for bit, so the weights have to be integral or quantized (see
+         * {@link #setWeightResolution(double)}).
+         */
+        PACKED
+    }
+
+    /**
+     * How the shortest paths are traversed when the statistics are kept in primitive matrices.
+     */
+    public enum Engine {
+        /**
+         * Dijkstra's algorithm on the JUNG graph, with per-source maps copied into the store.
+         */
+        JUNG,
+        /**
+         * Primitive traversal of a compressed sparse row copy of the graph (see {@link CsrShortestPathCount}).
+         */
+        CSR
+    }
+
+    private Storage storage = Storage.DENSE;
+    private Engine engine = Engine.CSR;
+    private int parallelism = 1;
+    private double weightResolution = 0;
+
+    public Storage getStorage() {
+        return storage;
+    }
+
+    public PathCountOptions setStorage(Storage storage) {
+        this.storage = storage;
+        return this;
+    }
+
+    /**
+     * @return Traversal used with dense storage - map storage always traverses the JUNG graph
+     */
+    public Engine getEngine() {
+        return engine;
+    }
+
+    public PathCountOptions setEngine(Engine engine) {
+        this.engine = engine;
+        return this;
+    }
+
+    /**
+     * @return Number of threads running the single-source passes
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public PathCountOptions setParallelism(int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("Parallelism must be positive");
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * @return Resolution the edge weights are quantized to, 0 if they are used as they are
+     */
+    public double getWeightResolution() {
+        return weightResolution;
+    }
+
+    /**
+     * Quantizes the edge weights to whole multiples of the resolution. Distances are sums of doubles and a real
+     * weight like 0.1 has no exact binary form, so two paths of the same length can differ in the last bits and one
+     * of them is then not counted as a shortest path. Quantized weights are counted in units of the resolution, i.e.
+     * as integers, whose sums are exact: every equality of distances - in the traversal, in the Bellman criterion of
+     * the scoring and in {@link EdgeUpdate#affects(double, double)} - then holds exactly. Integral weights also let
+     * the traversal use a bucket queue (see {@link CsrShortestPathCount}).
+     * <p/>
+     * All distances are then measured in units of the resolution; the scores don't depend on the unit of length.
+     *
+     * @param weightResolution Positive resolution, e.g. 1e-6, or 0 to use the weights as they are
+     */
+    public PathCountOptions setWeightResolution(double weightResolution) {
+        if (!(weightResolution >= 0) || Double.isInfinite(weightResolution))
+            throw new IllegalArgumentException("Weight resolution must be non-negative and finite");
+        this.weightResolution = weightResolution;
+        return this;
+    }
+
+    /**
+     * @param weight     Edge weight, may be infinite
+     * @param resolution Resolution, 0 for none
+     * @return The weight in whole units of the resolution, or the weight itself without a resolution
+     * @throws IllegalArgumentException if the weight has more units than a double represents exactly
+     */
+    public static double quantize(double weight, double resolution) {
+        if (resolution == 0 || Double.isInfinite(weight) || Double.isNaN(weight)) {
+            return weight;
+        }
+        double units = Math.rint(weight / resolution);
+        if (Math.abs(units) > MAX_UNITS)
+            throw new IllegalArgumentException("Weight " + weight + " is too large for resolution " + resolution);
+        return units;
+    }
+}
@@ -0,0 +1,102 @@
+package edu.usc.hive.shortestpath;
+
+/**
+ * Primitive all-pairs store of the statistics the group betweenness algorithm needs: distances, shortest path counts
+ * (sigma) and partial dependencies (delta). Rows are sources and columns targets, both addressed by dense vertex
+ * indices (see {@link VertexIndex}). Unreachable targets have an infinite distance and zero counts and dependencies.
+ * <p/>
+ * Path counts are doubles: they grow exponentially with the distance on lattice-like meshes and would overflow a long,
+ * while a double counts exactly up to <code>2^53</code> and beyond that only rounds, with a relative error of
+ * <code>2^-53</code> per addition, which the scores being ratios of path counts tolerate.
+ * <p/>
+ * Rows are written by a single thread each, reads are lock-free and don't allocate.
+ */
+public abstract class PathCountStore {
+
+    /**
+     * Largest number of elements a Java array can hold on common VMs.
+     */
+    public static final long MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+
+    protected final int n;
+    protected final int[] accessibleVertices;
+
+    protected PathCountStore(int n) {
+        this.n = n;
+        this.accessibleVertices = new int[n];
+    }
+
+    /**
+     * Creates a store on the heap if its matrices fit into arrays, or off the heap otherwise.
+     *
+     * @param n Number of vertices
+     */
+    public static PathCountStore create(int n) {
+        if ((long) n * n <= MAX_ARRAY_LENGTH) {
+            return new ArrayPathCountStore(n);
+        } else {
+            return new OffHeapPathCountStore(n);
+        }
+    }
+
+    /**
+     * @return Number of vertices
+     */
+    public int size() {
+        return n;
+    }
+
+    public abstract double getDistance(int source, int target);
+
+    public abstract double getPathCount(int source, int target);
+
+    public abstract double getPartialDependency(int source, int intermediary);
+
+    public abstract void setDistance(int source, int target, double distance);
+
+    public abstract void setPathCount(int source, int target, double count);
+
+    public abstract void setPartialDependency(int source, int intermediary, double dependency);
+
+    /**
+     * @return Number of vertices reachable from the source, including the source itself
+     */
+    public int getAccessibleVerticesCount(int source) {
+        return accessibleVertices[source];
+    }
+
+    public void setAccessibleVerticesCount(int source, int count) {
+        accessibleVertices[source] = count;
+    }
+
+    /**
+     * @return True if the distances and path counts of <code>(s, t)</code> and <code>(t, s)</code> share their entries,
+     * so that the pass of a source writes them only for targets <code>t >= s</code> (see {@link PackedPathCountStore})
+     */
+    public boolean isSymmetric() {
+        return false;
+    }
+
+    /**
+     * @return True if the matrices can't be written, e.g. because they are mapped read-only from a file
+     */
+    public boolean isReadOnly() {
+        return false;
+    }
+
+    /**
+     * Resets the row of the source, so that no target is reachable.
+     */
+    public void clearRow(int source) {
+        for (int t = 0; t < n; t++) {
+            setDistance(source, t, Double.POSITIVE_INFINITY);
+            setPathCount(source, t, 0);
+            setPartialDependency(source, t, 0);
+        }
+        accessibleVertices[source] = 0;
+    }
+
+    protected long offset(int source, int target) {
+        return (long) source * n + target;
+    }
+}
@@ -0,0 +1,59 @@
+package edu.usc.hive.shortestpath;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bijection between the vertices of a graph and the dense indices <code>0..n-1</code>, which address the rows and
+ * columns of the primitive all-pairs stores.
+ */
+public class VertexIndex<V> {
+
+    private final List<V> vertices;
+    private final Map<V, Integer> indices;
+
+    /**
+     * @param vertices Vertices in the order of their indices
+     */
+    public VertexIndex(Collection<V> vertices) {
+        this.vertices = new ArrayList<V>(vertices);
+        this.indices = new HashMap<V, Integer>(this.vertices.size() * 2);
+        for (int i = 0; i < this.vertices.size(); i++) {
+            if (indices.put(this.vertices.get(i), i) != null)
+                throw new IllegalArgumentException("Duplicate vertex " + this.vertices.get(i));
+        }
+    }
+
+    public int size() {
+        return vertices.size();
+    }
+
+    /**
+     * @return Index of the vertex
+     * @throws IllegalArgumentException if the vertex is not indexed
+     */
+    public int indexOf(V v) {
+        Integer i = indices.get(v);
+        if (i == null)
+            throw new IllegalArgumentException("Vertex " + v + " is not part of the index");
+        return i;
+    }
+
+    public boolean contains(V v) {
+        return indices.containsKey(v);
+    }
+
+    public V get(int i) {
+        return vertices.get(i);
+    }
+
+    /**
+     * @return Vertices in the order of their indices
+     */
+    public List<V> getVertices() {
+        return vertices;
+    }
+}
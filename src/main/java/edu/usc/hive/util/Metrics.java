@@ -0,0 +1,338 @@
+package edu.usc.hive.util;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongBinaryOperator;
+
+/**
+ * Registry of the counters and timers of a run, cheap enough for the hot paths: every metric is a set of striped
+ * {@link LongAdder}s, so threads updating it don't contend, and loops over many groups count into local variables
+ * and add them once per chunk. The metrics are dumped as JSON, periodically to a file (see
+ * {@link #startReporting(File, long)}) or on demand, and published via JMX (see {@link #registerMBean()}).
+ * <p/>
+ * Heap allocation is measured per thread by the JVM (where supported): the dump adds the bytes allocated by the live
+ * threads to those of the finished threads of pools created with {@link #threadFactory()}.
+ */
+public class Metrics implements MetricsMXBean {
+
+    /**
+     * Time of the single-source pass of one source
+     */
+    public static final String PATHS_SOURCE = "paths.source";
+    /**
+     * Time of the computation of the complete B matrix
+     */
+    public static final String B_MATRIX = "b_matrix.precompute";
+    public static final String B_CACHE_HITS = "b_matrix.cache.hits";
+    public static final String B_CACHE_MISSES = "b_matrix.cache.misses";
+    /**
+     * Time of drawing the shortest paths of the sampled vertex pairs
+     */
+    public static final String SAMPLING = "sampling";
+    public static final String SAMPLED_PAIRS = "sampling.pairs";
+    /**
+     * Time of the search for the best groups of one size
+     */
+    public static final String SEARCH = "search";
+    public static final String GROUPS_ENUMERATED = "groups.enumerated";
+    public static final String GROUPS_SCORED = "groups.scored";
+    /**
+     * Groups the scorer rejects, e.g. disconnected ones
+     */
+    public static final String GROUPS_REJECTED = "groups.rejected";
+
+    private static final Metrics GLOBAL = new Metrics();
+
+    private final ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<String, Counter>();
+    private final ConcurrentMap<String, Timer> timers = new ConcurrentHashMap<String, Timer>();
+    private final LongAdder finishedThreadBytes = new LongAdder();
+    private final long startNanos = System.nanoTime();
+    private ScheduledExecutorService reporter;
+
+    /**
+     * A count of events.
+     */
+    public static class Counter {
+        private final LongAdder value = new LongAdder();
+
+        public void increment() {
+            value.increment();
+        }
+
+        public void add(long delta) {
+            value.add(delta);
+        }
+
+        public long get() {
+            return value.sum();
+        }
+    }
+
+    /**
+     * Number, total and maximum duration of timed events.
+     */
+    public static class Timer {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(new LongBinaryOperator() {
+            public long applyAsLong(long left, long right) {
+                return Math.max(left, right);
+            }
+        }, 0);
+
+        public void record(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+        }
+
+        /**
+         * Records the time since the start, given by <code>System.nanoTime()</code>
+         */
+        public void recordSince(long startNanos) {
+            record(System.nanoTime() - startNanos);
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getTotalNanos() {
+            return totalNanos.sum();
+        }
+
+        public long getMaxNanos() {
+            return maxNanos.get();
+        }
+    }
+
+    /**
+     * @return Metrics of the whole process
+     */
+    public static Metrics get() {
+        return GLOBAL;
+    }
+
+    /**
+     * @return The counter of the name, created on first use
+     */
+    public Counter counter(String name) {
+        Counter counter = counters.get(name);
+        if (counter == null) {
+            Counter created = new Counter();
+            counter = counters.putIfAbsent(name, created);
+            if (counter == null) counter = created;
+        }
+        return counter;
+    }
+
+    /**
+     * @return The timer of the name, created on first use
+     */
+    public Timer timer(String name) {
+        Timer timer = timers.get(name);
+        if (timer == null) {
+            Timer created = new Timer();
+            timer = timers.putIfAbsent(name, created);
+            if (timer == null) timer = created;
+        }
+        return timer;
+    }
+
+    public Map<String, Long> getValues() {
+        Map<String, Long> values = new TreeMap<String, Long>();
+        for (Map.Entry<String, Counter> e : counters.entrySet()) {
+            values.put(e.getKey(), e.getValue().get());
+        }
+        for (Map.Entry<String, Timer> e : timers.entrySet()) {
+            values.put(e.getKey() + ".count", e.getValue().getCount());
+            values.put(e.getKey() + ".total_ns", e.getValue().getTotalNanos());
+            values.put(e.getKey() + ".max_ns", e.getValue().getMaxNanos());
+        }
+        long allocated = getAllocatedBytes();
+        if (allocated >= 0) values.put("jvm.allocated_bytes", allocated);
+        return values;
+    }
+
+    public String getJson() {
+        StringWriter writer = new StringWriter();
+        try {
+            writeJson(writer);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);    // a StringWriter doesn't throw
+        }
+        return writer.toString();
+    }
+
+    /**
+     * Writes the counters, the timers in milliseconds and the rates derived from them: groups scored per second of
+     * search and bytes allocated per second of the run.
+     */
+    public void writeJson(Writer writer) throws IOException {
+        double uptimeSeconds = (System.nanoTime() - startNanos) / 1e9;
+        StringBuilder sb = new StringBuilder("{\n");
+        sb.append("  \"uptime_ms\": ").append(format(uptimeSeconds * 1e3)).append(",\n");
+        sb.append("  \"counters\": {");
+        String separator = "\n";
+        for (Map.Entry<String, Counter> e : new TreeMap<String, Counter>(counters).entrySet()) {
+            sb.append(separator).append("    \"").append(e.getKey()).append("\": ").append(e.getValue().get());
+            separator = ",\n";
+        }
+        sb.append("\n  },\n");
+        sb.append("  \"timers\": {");
+        separator = "\n";
+        for (Map.Entry<String, Timer> e : new TreeMap<String, Timer>(timers).entrySet()) {
+            Timer t = e.getValue();
+            long count = t.getCount();
+            sb.append(separator).append("    \"").append(e.getKey()).append("\": {\"count\": ").append(count)
+                    .append(", \"total_ms\": ").append(format(t.getTotalNanos() / 1e6))
+                    .append(", \"mean_ms\": ").append(format(count == 0 ? 0 : t.getTotalNanos() / 1e6 / count))
+                    .append(", \"max_ms\": ").append(format(t.getMaxNanos() / 1e6)).append("}");
+            separator = ",\n";
+        }
+        sb.append("\n  },\n");
+        long searchNanos = timer(SEARCH).getTotalNanos();
+        sb.append("  \"groups_per_second\": ")
+                .append(format(searchNanos == 0 ? 0 : counter(GROUPS_SCORED).get() * 1e9 / searchNanos)).append(",\n");
+        long allocated = getAllocatedBytes();
+        sb.append("  \"allocated_bytes\": ").append(allocated >= 0 ? Long.toString(allocated) : "null").append(",\n");
+        sb.append("  \"allocation_bytes_per_second\": ")
+                .append(allocated >= 0 && uptimeSeconds > 0 ? format(allocated / uptimeSeconds) : "null").append("\n");
+        sb.append("}\n");
+        writer.write(sb.toString());
+        writer.flush();
+    }
+
+    /**
+     * Writes the JSON into a temporary file next to the given one and renames it, so that a reader never sees a
+     * partial dump.
+     */
+    public void writeJson(File file) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        Writer writer = new FileWriter(tmp);
+        try {
+            writeJson(writer);
+        } finally {
+            writer.close();
+        }
+        if (!tmp.renameTo(file)) {
+            if (!file.delete() || !tmp.renameTo(file))
+                throw new IOException("Cannot rename " + tmp + " to " + file);
+        }
+    }
+
+    /**
+     * Dumps the metrics into the file every period from a daemon thread, until {@link #stopReporting()}.
+     */
+    public synchronized void startReporting(final File file, long periodMillis) {
+        if (periodMillis <= 0)
+            throw new IllegalArgumentException("Reporting period must be positive");
+        stopReporting();
+        reporter = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "metrics-reporter");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        reporter.scheduleAtFixedRate(new Runnable() {
+            public void run() {
+                try {
+                    writeJson(file);
+                } catch (IOException e) {
+                    System.err.println("Cannot write metrics to " + file + ": " + e.getMessage());
+                }
+            }
+        }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stopReporting() {
+        if (reporter != null) {
+            reporter.shutdownNow();
+            reporter = null;
+        }
+    }
+
+    /**
+     * Publishes the metrics as the MXBean <code>edu.usc.hive:type=Metrics</code> of the platform MBean server, if
+     * it is not published already.
+     */
+    public void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("edu.usc.hive:type=Metrics");
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot register the metrics MBean", e);
+        }
+    }
+
+    /**
+     * @return Factory of pool threads whose allocated bytes are still counted after they finish
+     */
+    public ThreadFactory threadFactory() {
+        final ThreadFactory threads = Executors.defaultThreadFactory();
+        return new ThreadFactory() {
+            public Thread newThread(final Runnable r) {
+                return threads.newThread(new Runnable() {
+                    public void run() {
+                        try {
+                            r.run();
+                        } finally {
+                            long bytes = getCurrentThreadAllocatedBytes();
+                            if (bytes > 0) finishedThreadBytes.add(bytes);
+                        }
+                    }
+                });
+            }
+        };
+    }
+
+    /**
+     * @return Bytes allocated on the heap by the live threads and the finished pool threads, -1 if the JVM doesn't
+     * measure them
+     */
+    public long getAllocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) return -1;
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        if (!threads.isThreadAllocatedMemorySupported() || !threads.isThreadAllocatedMemoryEnabled()) return -1;
+        long bytes = finishedThreadBytes.sum();
+        for (long allocated : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            if (allocated > 0) bytes += allocated;     // -1 for threads that finished meanwhile
+        }
+        return bytes;
+    }
+
+    private static long getCurrentThreadAllocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) return -1;
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        if (!threads.isThreadAllocatedMemorySupported() || !threads.isThreadAllocatedMemoryEnabled()) return -1;
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+}
@@ -0,0 +1,20 @@
+package edu.usc.hive.util;
+
+import java.util.Map;
+
+/**
+ * JMX view of the {@link Metrics} of a run, e.g. for jconsole or a monitoring agent.
+ */
+public interface MetricsMXBean {
+
+    /**
+     * @return Current values of all counters and timers, timers as <code>name.count</code>,
+     * <code>name.total_ns</code> and <code>name.max_ns</code>
+     */
+    Map<String, Long> getValues();
+
+    /**
+     * @return The values and the derived rates as written by {@link Metrics#writeJson(java.io.Writer)}
+     */
+    String getJson();
+}
@@ -0,0 +1,76 @@
+package edu.usc.hive.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Helpers for running independent pieces of work on a fixed pool of threads.
+ */
+public class Parallel {
+
+    private static final int BLOCKS_PER_THREAD = 8;  // more blocks than threads to even out the load
+
+    /**
+     * Work on the indices <code>[from, to)</code>.
+     */
+    public interface RangeTask {
+        void run(int from, int to);
+    }
+
+    /**
+     * Splits <code>[0, count)</code> into blocks and runs the task on them with the given number of threads. Each
+     * block is processed by a single thread and everything the tasks wrote is visible to the caller on return.
+     *
+     * @param count       Number of indices
+     * @param parallelism Number of threads, the task runs in the calling thread if it is 1
+     * @param task        Work on a block of indices
+     */
+    public static void forEachRange(int count, int parallelism, final RangeTask task) {
+        if (parallelism <= 1 || count <= 1) {
+            task.run(0, count);
+            return;
+        }
+        int blocks = Math.min(count, parallelism * BLOCKS_PER_THREAD);
+        ExecutorService pool = Executors.newFixedThreadPool(parallelism, Metrics.get().threadFactory());
+        try {
+            List<Future<Object>> futures = new ArrayList<Future<Object>>(blocks);
+            for (int b = 0; b < blocks; b++) {
+                final int from = (int) ((long) count * b / blocks);
+                final int to = (int) ((long) count * (b + 1) / blocks);
+                futures.add(pool.submit(new Callable<Object>() {
+                    public Object call() {
+                        task.run(from, to);
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Object> future : futures) {
+                getResult(future);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for parallel tasks", e);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Waits for the future and rethrows the unchecked exception of a failed task as is.
+     */
+    public static <T> T getResult(Future<T> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+}